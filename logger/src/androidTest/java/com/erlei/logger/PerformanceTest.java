@@ -1,6 +1,5 @@
 package com.erlei.logger;
 
-import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.test.filters.LargeTest;
 import android.util.Log;
@@ -163,11 +162,12 @@ public class PerformanceTest {
                 .suffix(".json")
                 .build();
         MockPrintStrategy strategy = MockPrintStrategy.warp(diskLogStrategy);
-        logger.addLogAdapter(new AsyncLogAdapter(new DiskLogAdapter(JsonFormatStrategy.newBuilder()
+        AsyncLogAdapter adapter = new AsyncLogAdapter(new DiskLogAdapter(JsonFormatStrategy.newBuilder()
                 .logStrategy(strategy)
-                .build())));
+                .build()));
+        logger.addLogAdapter(adapter);
         new PerformanceTester(name, logger::log).start();
-        SystemClock.sleep(1000 * 10);
+        Assert.assertTrue(adapter.flush(1000 * 10));
         Logger.replaceFileNullChar(LogFileManager.getLogFileDir(), "");
         Assert.assertEquals(strategy.getWrittenBytes(), getFolderSize(LogFileManager.getLogFileDir()));
     }
@@ -187,11 +187,12 @@ public class PerformanceTest {
                 .fileListener(new JsonFormatStrategy.JsonFileListener())
                 .build();
         MockPrintStrategy strategy = MockPrintStrategy.warp(diskLogStrategy);
-        logger.addLogAdapter(new AsyncLogAdapter(new DiskLogAdapter(JsonFormatStrategy.newBuilder()
+        AsyncLogAdapter adapter = new AsyncLogAdapter(new DiskLogAdapter(JsonFormatStrategy.newBuilder()
                 .logStrategy(strategy)
-                .build())));
+                .build()));
+        logger.addLogAdapter(adapter);
         new PerformanceTester(name, logger::log).start();
-        SystemClock.sleep(1000 * 10);
+        Assert.assertTrue(adapter.flush(1000 * 10));
         Assert.assertEquals(strategy.getWrittenBytes(), getFolderSize(LogFileManager.getLogFileDir()));
     }
 
@@ -28,6 +28,8 @@ int MMAPWriter::close() {
     if (ftruncate(fd, totalBytes) != 0) {
         result = -1;
     }
+    //文件已经是准确的长度了
+    closeCommittedLength(result == 0);
     if (msync(buffer, bufferSize, MS_ASYNC) != 0) {
         result = -1;
     }
@@ -72,6 +74,7 @@ MMAPWriter::~MMAPWriter() {
     if (buffer != NULL) {
         munmap(buffer, bufferSize);
     }
+    closeCommittedLength(false);
     if (fd != -1) {
         flock(fd, LOCK_UN);
         ::close(fd);
@@ -122,9 +125,63 @@ int MMAPWriter::init(const char *path, size_t pageCount) {
     LOGD("mmap success %d", (int) bufferSize);
     buffer = tempBuffer;
 
+    //失败时只是无法在异常退出后快速裁剪, 不影响写入
+    if (openCommittedLength(path) != 0) {
+        LOGW("open committed length failed %s", strerror(errno));
+    }
+    return 0;
+}
+
+int MMAPWriter::openCommittedLength(const char *path) {
+    std::string file(path);
+    size_t slash = file.find_last_of('/');
+    if (slash == std::string::npos) {
+        committedLengthPath = "." + file + ".len";
+    } else {
+        committedLengthPath = file.substr(0, slash + 1) + "." + file.substr(slash + 1) + ".len";
+    }
+    committedLengthFd = open(committedLengthPath.c_str(), O_RDWR | O_CREAT, 0600);
+    if (committedLengthFd == -1) {
+        return -1;
+    }
+    if (ftruncate(committedLengthFd, sizeof(CommittedLength)) != 0) {
+        closeCommittedLength(false);
+        return -2;
+    }
+    void *mapped = mmap(0, sizeof(CommittedLength), PROT_WRITE | PROT_READ, MAP_SHARED,
+                        committedLengthFd, 0);
+    if (mapped == MAP_FAILED) {
+        closeCommittedLength(false);
+        return -3;
+    }
+    committedLength = (CommittedLength *) mapped;
+    committedLength->version = COMMITTED_LENGTH_VERSION;
+    commit();
+    __atomic_store_n(&committedLength->magic, COMMITTED_LENGTH_MAGIC, __ATOMIC_RELEASE);
     return 0;
 }
 
+void MMAPWriter::closeCommittedLength(bool remove) {
+    if (committedLength != NULL) {
+        munmap(committedLength, sizeof(CommittedLength));
+        committedLength = NULL;
+    }
+    if (committedLengthFd != -1) {
+        ::close(committedLengthFd);
+        committedLengthFd = -1;
+        if (remove) {
+            unlink(committedLengthPath.c_str());
+        }
+    }
+}
+
+void MMAPWriter::commit() {
+    if (committedLength != NULL) {
+        __atomic_store_n(&committedLength->length, (int64_t) (totalBytes + writtenBytes),
+                         __ATOMIC_RELEASE);
+    }
+}
+
 int MMAPWriter::flush() {
     if (writtenBytes == 0)
         return 0;
@@ -284,11 +341,37 @@ Java_com_erlei_logger_writer_MMAPLogWriter_nInit(JNIEnv *env, jobject, jstring p
 extern "C" void
 Java_com_erlei_logger_writer_MMAPLogWriter_nWrite(JNIEnv *env, jobject, jlong writer_,
                                                   jbyteArray buffer_, jint off, jint len) {
-    jbyte *buffer = env->GetByteArrayElements(buffer_, NULL);
+    //先复制出来, write() 换窗口时会 ftruncate/munmap/mmap, 不能在 critical 区里阻塞 GC
+    if (off < 0 || len < 0 || off + len > env->GetArrayLength(buffer_)) {
+        throwIOException(env, (char *) "Invalid array range");
+        return;
+    }
+    jbyte *buffer = new jbyte[len > 0 ? len : 1];
+    env->GetByteArrayRegion(buffer_, off, len, buffer);
     MMAPWriter *writer = (MMAPWriter *) writer_;
-    int result = writer->write(buffer, off, len);
-    env->ReleaseByteArrayElements(buffer_, buffer, 0);
-    if (result != 0) throwIOException(env, strerror(errno));
+    int result = writer->write(buffer, 0, len);
+    delete[] buffer;
+    if (result != 0) {
+        throwIOException(env, strerror(errno));
+    } else {
+        writer->commit();
+    }
+}
+
+extern "C" void
+Java_com_erlei_logger_writer_MMAPLogWriter_nWriteDirect(JNIEnv *env, jobject, jlong writer_,
+                                                        jobject buffer_, jint off, jint len) {
+    jbyte *buffer = (jbyte *) env->GetDirectBufferAddress(buffer_);
+    if (buffer == NULL || off < 0 || len < 0 || off + len > env->GetDirectBufferCapacity(buffer_)) {
+        throwIOException(env, (char *) "Invalid direct buffer");
+        return;
+    }
+    MMAPWriter *writer = (MMAPWriter *) writer_;
+    if (writer->write(buffer, off, len) != 0) {
+        throwIOException(env, strerror(errno));
+    } else {
+        writer->commit();
+    }
 }
 
 extern "C" void
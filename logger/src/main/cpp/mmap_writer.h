@@ -25,11 +25,25 @@
 #include <android/log.h>
 #include <sys/mman.h>
 #include <jni.h>
+#include <stdint.h>
+#include <string>
 
 #ifdef __cplusplus
 extern "C" {
 #endif
 
+#define COMMITTED_LENGTH_MAGIC 0x4C4C454E
+#define COMMITTED_LENGTH_VERSION 1
+
+/**
+ * 与 Java 层 CommittedLength 相同的布局, 保存在日志文件旁边的 .name.len 文件中
+ */
+struct CommittedLength {
+    uint32_t magic;
+    uint32_t version;
+    int64_t length;
+};
+
 class MMAPWriter {
 
 protected:
@@ -42,6 +56,13 @@ protected:
     long writtenBytes = 0;
     long totalBytes = 0;
     long page_size = sysconf(_SC_PAGE_SIZE);
+    std::string committedLengthPath;
+    int committedLengthFd = -1;
+    CommittedLength *committedLength = NULL;
+
+    int openCommittedLength(const char *path);
+
+    void closeCommittedLength(bool remove);
 
 public:
     MMAPWriter(JNIEnv *pEnv);
@@ -58,6 +79,11 @@ public:
 
     int write(jbyte *bytes, jint offset, jlong len);
 
+    /**
+     * 写入之后更新已提交的长度 (release), 异常退出后据此裁剪文件末尾的 NUL
+     */
+    void commit();
+
     int flush();
 
     int close();
@@ -86,6 +112,10 @@ JNIEXPORT void JNICALL
 Java_com_erlei_logger_writer_MMAPLogWriter_nWrite(JNIEnv *env, jobject, jlong nativeWriter,
                                                   jbyteArray buffer_, jint off, jint len);
 
+JNIEXPORT void JNICALL
+Java_com_erlei_logger_writer_MMAPLogWriter_nWriteDirect(JNIEnv *env, jobject, jlong nativeWriter,
+                                                        jobject buffer_, jint off, jint len);
+
 
 JNIEXPORT void JNICALL
 Java_com_erlei_logger_writer_MMAPLogWriter_nReplaceLastNulChar(JNIEnv *env, jclass,
@@ -4,8 +4,10 @@ import android.content.Context;
 import android.support.annotation.IntRange;
 import android.support.annotation.NonNull;
 import com.erlei.logger.printer.DiskPrintStrategy;
+import com.erlei.logger.writer.MMAPCacheLogWriter;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -37,6 +39,35 @@ public class LogFileManager {
         if (dir.isFile()) dir = dir.getParentFile();
         sDir = dir;
         sDefaultLogFileProvider = new DiskPrintStrategy.DefaultLogFileProvider(sDir);
+        recoverCache(getCacheDir());
+    }
+
+    /**
+     * @return the directory of the {@link MMAPCacheLogWriter} cache files
+     */
+    @NonNull
+    public static File getCacheDir() {
+        return new File(getLogFileDir(), ".cache");
+    }
+
+    /**
+     * Appends the logs left in the mmap cache files by the previous process to their log files,
+     * in the background so that it does not block the startup.
+     */
+    private static void recoverCache(@NonNull File cacheDir) {
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(MMAPCacheLogWriter.CACHE_SUFFIX));
+        if (files == null || files.length == 0) return;
+        Thread thread = new Thread(() -> {
+            for (File file : files) {
+                try {
+                    MMAPCacheLogWriter.recover(file);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, TAG);
+        thread.setDaemon(true);
+        thread.start();
     }
 
     public static DiskPrintStrategy.LogFileProvider getDefaultLogFileProvider() {
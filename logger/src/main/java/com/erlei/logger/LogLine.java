@@ -7,6 +7,8 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Log;
 import com.erlei.logger.format.ArgsFormatter;
+import com.erlei.logger.format.MessageFormatter;
+import com.erlei.logger.writer.Utf8;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -14,19 +16,27 @@ import org.json.JSONObject;
 import javax.xml.transform.*;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static com.erlei.logger.Logger.*;
 
 public class LogLine implements Serializable, Cloneable, Parcelable {
 
-    private static final Pools.SynchronizedPool<LogLine> sPool = new Pools.SynchronizedPool<>(100);
+    private static final Pools.ConcurrentPool<LogLine> sPool = new Pools.ConcurrentPool<>(100);
+    private static final AtomicIntegerFieldUpdater<LogLine> sRefs =
+            AtomicIntegerFieldUpdater.newUpdater(LogLine.class, "refs");
 
     @NonNull
     public static LogLine obtain(int level,
@@ -59,6 +69,8 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
             instance.argsFormatter = LoggerFactory.sArgsFormatter;
         }
         instance.tag = tag;
+        instance.messageFormatter = LoggerFactory.sMessageFormatter;
+        instance.refs = 1;
         return instance;
     }
 
@@ -91,6 +103,7 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
 
 
     private int level;
+    private long sequence;
     private String fulTag;
     private String message;
     private long time;
@@ -103,6 +116,60 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
     private String xml;
     private String json;
     private transient ArgsFormatter argsFormatter;
+    /**
+     * Taken when the line is obtained, the line may be formatted later on another thread
+     */
+    private transient MessageFormatter messageFormatter;
+    private transient boolean throwableResolved;
+    /**
+     * The message made of the format and the args, {@link #message} is the output of the format
+     * strategy of the adapter this line was given to
+     */
+    private transient String rawMessage;
+    /**
+     * The event this line is a view of, it provides the raw message, null if this line is the event
+     */
+    private transient LogLine event;
+    /**
+     * The references to the line, it goes back to the pool when the last one is recycled
+     */
+    private transient volatile int refs;
+    /**
+     * Set on an event once it has views, the messages rendered for its adapters are then shared
+     */
+    private transient boolean shared;
+    /**
+     * Format keys and the messages rendered with them, guarded by the event
+     */
+    private transient Object[] formatted;
+    /**
+     * The UTF-8 message set by {@link #setEncodedMessage(CharSequence)}, the array is kept by the
+     * line across the pool and only the first {@link #encodedLength} bytes are the message
+     */
+    private transient byte[] encoded;
+    /**
+     * 0 if the message is not encoded
+     */
+    private transient int encodedLength;
+
+    private static final int MAX_FORMATTED = 4;
+    private static final int MAX_ENCODED = 8 * 1024;
+    /**
+     * The args of the fixed arity Printer methods, unboxed until {@link #getArgs()} is called,
+     * which only happens to a line an adapter has accepted
+     */
+    private transient int fixedArgCount;
+    private transient byte fixedKind;
+    private transient long fixedBits;
+    private transient Object fixedObject0;
+    private transient Object fixedObject1;
+
+    private static final byte FIXED_OBJECT = 0;
+    private static final byte FIXED_INT = 1;
+    private static final byte FIXED_LONG = 2;
+    private static final byte FIXED_FLOAT = 3;
+    private static final byte FIXED_DOUBLE = 4;
+    private static final byte FIXED_CHAR = 5;
 
     private LogLine() {
     }
@@ -115,17 +182,60 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
         this.time = time;
     }
 
+    /**
+     * @return the sequence number assigned by the {@link LoggerPrinter} when the line was dispatched,
+     * lines from the same printer can be sorted by it to restore the calling order
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the extras to change, a view copies the map it shares with its event first
+     */
     @NonNull
     public Map<String, String> getExtra() {
+        if (event != null && extra != null && extra == event.extra) extra = cloneExtra();
         if (extra == null) extra = new HashMap<>();
         return extra;
     }
 
+    /**
+     * @return the extras, null if none were set, the map is not created for reading and must not be changed
+     */
+    @Nullable
+    public Map<String, String> peekExtra() {
+        return extra;
+    }
+
+    /**
+     * @return the throwable of the line, or a Throwable passed as the last arg which the
+     * {@link MessageFormatter} does not use
+     */
     @Nullable
     public Throwable getThrowable() {
+        if (!throwableResolved) {
+            throwableResolved = true;
+            Object[] args = getArgs();
+            if (throwable == null && format != null && args != null && args.length > 0 && messageFormatter != null) {
+                throwable = messageFormatter.getThrowable(format, args);
+            }
+        }
         return throwable;
     }
 
+    /**
+     * @return the formatter which applies the args to the format string
+     */
+    @Nullable
+    public MessageFormatter getMessageFormatter() {
+        return messageFormatter;
+    }
+
     @Level
     public int getLevel() {
         return level;
@@ -139,6 +249,99 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
         return tag;
     }
 
+    /**
+     * @return the format string passed by the caller, the message before the args are applied
+     */
+    @Nullable
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the args, the unboxed args of the fixed arity Printer methods are boxed on the first call
+     */
+    @Nullable
+    public Object[] getArgs() {
+        if (fixedArgCount == 1) {
+            args = new Object[]{boxFixedArg()};
+        } else if (fixedArgCount == 2) {
+            args = new Object[]{fixedObject0, fixedObject1};
+        }
+        clearFixedArgs();
+        return args;
+    }
+
+    /**
+     * @return the number of args, without boxing the unboxed ones
+     */
+    public int getArgCount() {
+        if (fixedArgCount > 0) return fixedArgCount;
+        return args == null ? 0 : args.length;
+    }
+
+    @Nullable
+    private Object boxFixedArg() {
+        switch (fixedKind) {
+            case FIXED_INT:
+                return (int) fixedBits;
+            case FIXED_LONG:
+                return fixedBits;
+            case FIXED_FLOAT:
+                return Float.intBitsToFloat((int) fixedBits);
+            case FIXED_DOUBLE:
+                return Double.longBitsToDouble(fixedBits);
+            case FIXED_CHAR:
+                return (char) fixedBits;
+            default:
+                return fixedObject0;
+        }
+    }
+
+    void setFixedArgs(int arg) {
+        setFixedArg(FIXED_INT, arg);
+    }
+
+    void setFixedArgs(long arg) {
+        setFixedArg(FIXED_LONG, arg);
+    }
+
+    void setFixedArgs(float arg) {
+        setFixedArg(FIXED_FLOAT, Float.floatToRawIntBits(arg));
+    }
+
+    void setFixedArgs(double arg) {
+        setFixedArg(FIXED_DOUBLE, Double.doubleToRawLongBits(arg));
+    }
+
+    void setFixedArgs(char arg) {
+        setFixedArg(FIXED_CHAR, arg);
+    }
+
+    void setFixedArgs(@Nullable Object arg) {
+        setFixedArg(FIXED_OBJECT, 0);
+        fixedObject0 = arg;
+    }
+
+    void setFixedArgs(@Nullable Object arg0, @Nullable Object arg1) {
+        setArgs(null);
+        fixedObject0 = arg0;
+        fixedObject1 = arg1;
+        fixedArgCount = 2;
+    }
+
+    private void setFixedArg(byte kind, long bits) {
+        setArgs(null);
+        fixedKind = kind;
+        fixedBits = bits;
+        fixedArgCount = 1;
+    }
+
+    private void clearFixedArgs() {
+        fixedArgCount = 0;
+        fixedObject0 = null;
+        fixedObject1 = null;
+    }
+
 
     @NonNull
     public String getFulTag() {
@@ -160,8 +363,68 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
         return str == null || str.length() == 0;
     }
 
+    /**
+     * Sets the output of the format strategy, the message made of the format and the args is kept
+     * for the other adapters of the line
+     */
     public void setMessage(String message) {
         this.message = message;
+        encodedLength = 0;
+    }
+
+    /**
+     * Sets the output of the format strategy as UTF-8, the chars are encoded into a buffer the line
+     * reuses, so the strategy can render into a reused builder and no String is made for the line.
+     * {@link #getMessage()} decodes the bytes only if it is called.
+     *
+     * @param message the chars are copied, the sequence may be reused once this method returns
+     */
+    public void setEncodedMessage(@NonNull CharSequence message) {
+        int length = message.length();
+        if (length == 0) {
+            setMessage("");
+            return;
+        }
+        byte[] bytes = encoded;
+        // an ASCII line takes a byte per char, the exact length is counted only when it may not fit
+        if (bytes == null || bytes.length < length * 3) {
+            int needed = Utf8.encodedLength(message);
+            if (bytes == null || bytes.length < needed) {
+                bytes = encoded = new byte[Math.max(needed, bytes == null ? 256 : bytes.length * 2)];
+            }
+        }
+        this.message = null;
+        encodedLength = Utf8.encode(message, bytes, 0);
+    }
+
+    private void setEncodedMessage(@NonNull byte[] message, int length) {
+        if (length == 0) {
+            setMessage("");
+            return;
+        }
+        byte[] bytes = encoded;
+        if (bytes == null || bytes.length < length) bytes = encoded = new byte[Math.max(length, 256)];
+        System.arraycopy(message, 0, bytes, 0, length);
+        this.message = null;
+        encodedLength = length;
+    }
+
+    /**
+     * Writers copy these bytes instead of encoding {@link #getMessage()} again
+     *
+     * @return the message set by {@link #setEncodedMessage(CharSequence)}, valid up to
+     * {@link #getEncodedLength()} and until the message changes, null if the message is not encoded
+     */
+    @Nullable
+    public byte[] getEncodedMessage() {
+        return encodedLength > 0 ? encoded : null;
+    }
+
+    /**
+     * @return the length of {@link #getEncodedMessage()}, 0 if the message is not encoded
+     */
+    public int getEncodedLength() {
+        return encodedLength;
     }
 
     public String getLevelString() {
@@ -183,13 +446,25 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
         }
     }
 
+    /**
+     * @return the message set by {@link #setMessage(String)}, or the message made of the format and the args
+     */
     @NonNull
     public String getMessage() {
+        if (message != null) return message;
+        if (encodedLength > 0) return message = new String(encoded, 0, encodedLength, StandardCharsets.UTF_8);
+        return event != null ? event.getRawMessage() : getRawMessage();
+    }
+
+    @NonNull
+    private String getRawMessage() {
+        // the views of an event may race here, they compute the same message
+        String message = rawMessage;
         if (message != null) return message;
         if (!TextUtils.isEmpty(format)) {
             //如果指定了format
             message = format();
-        } else if (args != null && args.length > 0) {
+        } else if (getArgCount() > 0) {
             //自动格式化
             message = autoFormat();
         } else {
@@ -203,7 +478,7 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
                 message = "Empty/NULL message content";
             }
         }
-        return message;
+        return rawMessage = message;
     }
 
 
@@ -213,42 +488,119 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
     }
 
     public void setArgs(Object[] args) {
-        this.message = null;
+        invalidate();
+        this.throwableResolved = false;
+        clearFixedArgs();
         this.args = args;
     }
 
     public void setFormat(String format) {
-        this.message = null;
+        invalidate();
+        this.throwableResolved = false;
         this.format = format;
     }
 
     public void setThrowable(Throwable throwable) {
-        this.message = null;
+        invalidate();
+        // set explicitly, null included, a Throwable among the args is not looked for again
+        this.throwableResolved = true;
         this.throwable = throwable;
     }
 
     public void setXml(String xml) {
-        this.message = null;
+        invalidate();
         this.xml = xml;
     }
 
     public void setJson(String json) {
-        this.message = null;
+        invalidate();
         this.json = json;
     }
 
 
+    /**
+     * Sets the message rendered by another adapter of this line with an equal key
+     *
+     * @param key the {@link com.erlei.logger.format.FormatStrategy#getFormatKey()} of the strategy
+     * @return false if there is none, the strategy renders the message then
+     */
+    public boolean useFormatted(@Nullable Object key) {
+        LogLine event = this.event != null ? this.event : this;
+        if (key == null || !event.shared) return false;
+        synchronized (event) {
+            Object[] formatted = event.formatted;
+            if (formatted == null) return false;
+            for (int i = 0; i < formatted.length && formatted[i] != null; i += 2) {
+                if (key.equals(formatted[i])) {
+                    byte[] message = (byte[]) formatted[i + 1];
+                    setEncodedMessage(message, message.length);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the output of the format strategy like {@link #setEncodedMessage(CharSequence)}, the other
+     * adapters of this line with an equal key get it from {@link #useFormatted(Object)} instead of
+     * rendering it again
+     *
+     * @param key the {@link com.erlei.logger.format.FormatStrategy#getFormatKey()} of the strategy
+     */
+    public void setFormatted(@Nullable Object key, @NonNull CharSequence message) {
+        setEncodedMessage(message);
+        LogLine event = this.event != null ? this.event : this;
+        if (key == null || !event.shared) return;
+        synchronized (event) {
+            if (event.formatted == null) event.formatted = new Object[MAX_FORMATTED * 2];
+            Object[] formatted = event.formatted;
+            for (int i = 0; i < formatted.length; i += 2) {
+                if (formatted[i] == null) {
+                    formatted[i] = key;
+                    // the buffer of this line is reused, the other adapters get a copy
+                    formatted[i + 1] = encodedLength > 0 ? Arrays.copyOf(encoded, encodedLength) : new byte[0];
+                    return;
+                }
+                if (key.equals(formatted[i])) return;
+            }
+        }
+    }
+
+    /**
+     * The message changes, a view stops sharing the raw message of its event and takes a copy of
+     * the extras, the event and its other views are left as they were
+     */
+    private void invalidate() {
+        message = null;
+        encodedLength = 0;
+        rawMessage = null;
+        LogLine event = this.event;
+        if (event != null) {
+            if (extra != null && extra == event.extra) extra = cloneExtra();
+            this.event = null;
+            event.recycle();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private HashMap<String, String> cloneExtra() {
+        return (extra == null || extra.isEmpty()) ? null : (HashMap<String, String>) extra.clone();
+    }
+
     @Override
     public String toString() {
         return "LogLine{" +
                 "level=" + level +
+                ", sequence=" + sequence +
                 ", fulTag='" + fulTag + '\'' +
                 ", message='" + message + '\'' +
                 ", time=" + time +
                 ", extra=" + extra +
                 ", module='" + module + '\'' +
                 ", throwable=" + throwable +
-                ", args=" + Arrays.toString(args) +
+                ", args=" + Arrays.toString(getArgs()) +
                 ", format='" + format + '\'' +
                 ", xml='" + xml + '\'' +
                 ", json='" + json + '\'' +
@@ -279,7 +631,7 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
 
     @NonNull
     private String autoFormat() {
-        return argsFormatter.format(args);
+        return argsFormatter.format(getArgs());
     }
 
     /**
@@ -329,10 +681,14 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
     @NonNull
     private String format() {
         String msg;
+        // resolves a Throwable passed as the last arg into the throwable field
+        getThrowable();
+        Object[] args = getArgs();
         if (args == null || args.length == 0) {
             msg = format;
         } else {
-            msg = String.format(format, args);
+            MessageFormatter formatter = messageFormatter != null ? messageFormatter : LoggerFactory.sMessageFormatter;
+            msg = formatter.format(format, args);
         }
         if (throwable != null && msg != null) {
             msg += (" : " + Log.getStackTraceString(throwable));
@@ -348,22 +704,99 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
     }
 
 
-    @SuppressWarnings("unchecked")
     @Override
     protected LogLine clone() {
-        HashMap<String, String> map = (extra == null || extra.isEmpty()) ? null : (HashMap<String, String>) extra.clone();
-        LogLine obtain = obtain(level, tag, time, module, format, json, xml, throwable, map, argsFormatter, args);
+        LogLine obtain = obtain(level, tag, time, module, format, json, xml, throwable, cloneExtra(), argsFormatter, args);
         obtain.message = message;
+        if (encodedLength > 0) obtain.setEncodedMessage(encoded, encodedLength);
+        obtain.rawMessage = event != null ? event.rawMessage : rawMessage;
         obtain.fulTag = fulTag;
+        obtain.sequence = sequence;
+        obtain.messageFormatter = messageFormatter;
+        obtain.throwableResolved = throwableResolved;
+        obtain.fixedArgCount = fixedArgCount;
+        obtain.fixedKind = fixedKind;
+        obtain.fixedBits = fixedBits;
+        obtain.fixedObject0 = fixedObject0;
+        obtain.fixedObject1 = fixedObject1;
         return obtain;
     }
 
+    /**
+     * The line given to an adapter is a view of the event when another adapter takes it too,
+     * the view has a message, a module and a time of its own and shares everything else with
+     * the event, which is not recycled before its views. A view that changes the shared parts
+     * copies them first, the event is not changed once it has views. Every line, views included,
+     * has to be recycled once by the adapter it was given to.
+     *
+     * @return a line for another adapter
+     */
+    @NonNull
+    LogLine view() {
+        // resolved before the event is shared, the args are boxed and not changed again
+        getThrowable();
+        LogLine event = this.event != null ? this.event : this;
+        event.shared = true;
+        sRefs.incrementAndGet(event);
+        LogLine view = obtain(level, tag, time, module, format, json, xml, throwable, extra, argsFormatter, args);
+        view.event = event;
+        view.fulTag = fulTag;
+        view.sequence = sequence;
+        view.messageFormatter = messageFormatter;
+        view.throwableResolved = true;
+        return view;
+    }
+
+    /**
+     * Keeps the line out of the pool until {@link #recycle()} is called once more
+     *
+     * @return this line
+     */
+    @NonNull
+    public LogLine retain() {
+        sRefs.incrementAndGet(this);
+        return this;
+    }
+
+    /**
+     * Recycles the lines of a batch starting at from, used when a stage fails before it handed them on
+     */
+    public static void recycleAll(@NonNull List<LogLine> logLines, int from) {
+        for (int i = from; i < logLines.size(); i++) {
+            logLines.get(i).recycle();
+        }
+    }
+
+    /**
+     * Releases a reference to the line, the line goes back to the pool with the last one.
+     * A line recycled once too often is ignored, unless {@link LoggerFactory#checkRecycle(boolean)} is set.
+     */
     public void recycle() {
+        int refs = sRefs.decrementAndGet(this);
+        if (refs > 0) return;
+        if (refs < 0) {
+            sRefs.incrementAndGet(this);
+            if (Pools.sCheckRelease) throw new IllegalStateException("LogLine recycled twice");
+            return;
+        }
+        LogLine event = this.event;
+        this.event = null;
         level = 0;
+        sequence = 0;
         time = 0;
-        if (extra != null) extra.clear();
+        // the map a view shares belongs to its event
+        if (event != null && extra == event.extra) {
+            extra = null;
+        } else if (extra != null) {
+            extra.clear();
+        }
         fulTag = null;
         message = null;
+        encodedLength = 0;
+        if (encoded != null && encoded.length > MAX_ENCODED) encoded = null;
+        rawMessage = null;
+        shared = false;
+        if (formatted != null) Arrays.fill(formatted, null);
         module = null;
         throwable = null;
         args = null;
@@ -371,10 +804,26 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
         xml = null;
         json = null;
         argsFormatter = null;
+        messageFormatter = null;
+        throwableResolved = false;
+        clearFixedArgs();
         sPool.release(this);
+        if (event != null) event.recycle();
     }
 
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // the unboxed args and the raw message are transient
+        getArgs();
+        if (message == null) message = getMessage();
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        refs = 1;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -384,7 +833,7 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeInt(this.level);
         dest.writeString(this.fulTag);
-        dest.writeString(this.message);
+        dest.writeString(getMessage());
         dest.writeLong(this.time);
         dest.writeSerializable(this.extra);
         dest.writeString(this.module);
@@ -392,12 +841,14 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
         dest.writeSerializable(this.throwable);
         dest.writeString(this.xml);
         dest.writeString(this.json);
+        dest.writeLong(this.sequence);
     }
 
     private LogLine(Parcel in) {
         this.level = in.readInt();
         this.fulTag = in.readString();
         this.message = in.readString();
+        this.refs = 1;
         this.time = in.readLong();
         this.extra = (HashMap<String, String>) in.readSerializable();
         this.module = in.readString();
@@ -405,6 +856,7 @@ public class LogLine implements Serializable, Cloneable, Parcelable {
         this.throwable = (Throwable) in.readSerializable();
         this.xml = in.readString();
         this.json = in.readString();
+        this.sequence = in.readLong();
     }
 
     public static final Creator<LogLine> CREATOR = new Creator<LogLine>() {
@@ -4,8 +4,12 @@ import android.support.annotation.NonNull;
 import com.erlei.logger.writer.LogWriter;
 
 import java.io.File;
+import java.io.IOException;
 
 public interface LogWriterFactory {
+    /**
+     * @throws IOException if the file cannot be opened, the lines are dropped until a later print opens it
+     */
     @NonNull
-    LogWriter create(File file);
+    LogWriter create(File file) throws IOException;
 }
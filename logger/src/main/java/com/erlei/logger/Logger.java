@@ -83,6 +83,11 @@ public class Logger {
     public static final int ERROR = Log.ERROR;
     public static final int ASSERT = Log.ASSERT;
 
+    /**
+     * Shared by the calls without args, the args of a line are never changed
+     */
+    private static final Object[] NO_ARGS = new Object[0];
+
     private final String mTag;
 
     /**
@@ -101,12 +106,24 @@ public class Logger {
         sPrinter.log(level, tag, message, throwable);
     }
 
+    /**
+     * Guards a log call whose args are expensive to build
+     * <pre><code>
+     *   if (Logger.isLoggable(Logger.DEBUG)) Logger.d(TAG, "state %s", dumpState());
+     * </code></pre>
+     *
+     * @return false if no adapter prints lines of the level
+     */
+    public static boolean isLoggable(@Level int level) {
+        return sPrinter.isLoggable(level);
+    }
+
     public static void d(@Nullable String tag, @NonNull String message, @Nullable Object... args) {
         t(tag).d(message, args);
     }
 
     public static void e(@Nullable String tag, @NonNull String message, @Nullable Object... args) {
-        t(tag).e(null, message, args);
+        t(tag).e((Throwable) null, message, args);
     }
 
     public static void e(@Nullable String tag, @Nullable Throwable throwable, @NonNull String message, @Nullable Object... args) {
@@ -133,6 +150,207 @@ public class Logger {
         t(tag).wtf(message, args);
     }
 
+    /*
+     * Fixed arity overloads, see Printer. Each instance overload needs a static one taking the tag,
+     * otherwise Logger.d("tag", "message", arg) would resolve to the instance method.
+     */
+
+    public static void d(@Nullable String tag, @NonNull String message) {
+        t(tag).d(message, NO_ARGS);
+    }
+
+    public static void d(@Nullable String tag, @NonNull String message, int arg) {
+        t(tag).d(message, arg);
+    }
+
+    public static void d(@Nullable String tag, @NonNull String message, long arg) {
+        t(tag).d(message, arg);
+    }
+
+    public static void d(@Nullable String tag, @NonNull String message, float arg) {
+        t(tag).d(message, arg);
+    }
+
+    public static void d(@Nullable String tag, @NonNull String message, double arg) {
+        t(tag).d(message, arg);
+    }
+
+    public static void d(@Nullable String tag, @NonNull String message, char arg) {
+        t(tag).d(message, arg);
+    }
+
+    public static void d(@Nullable String tag, @NonNull String message, @Nullable Object arg) {
+        t(tag).d(message, arg);
+    }
+
+    public static void d(@Nullable String tag, @NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        t(tag).d(message, arg0, arg1);
+    }
+
+    public static void e(@Nullable String tag, @NonNull String message) {
+        t(tag).e(message, NO_ARGS);
+    }
+
+    public static void e(@Nullable String tag, @NonNull String message, int arg) {
+        t(tag).e(message, arg);
+    }
+
+    public static void e(@Nullable String tag, @NonNull String message, long arg) {
+        t(tag).e(message, arg);
+    }
+
+    public static void e(@Nullable String tag, @NonNull String message, float arg) {
+        t(tag).e(message, arg);
+    }
+
+    public static void e(@Nullable String tag, @NonNull String message, double arg) {
+        t(tag).e(message, arg);
+    }
+
+    public static void e(@Nullable String tag, @NonNull String message, char arg) {
+        t(tag).e(message, arg);
+    }
+
+    public static void e(@Nullable String tag, @NonNull String message, @Nullable Object arg) {
+        t(tag).e(message, arg);
+    }
+
+    public static void e(@Nullable String tag, @NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        t(tag).e(message, arg0, arg1);
+    }
+
+    public static void w(@Nullable String tag, @NonNull String message) {
+        t(tag).w(message, NO_ARGS);
+    }
+
+    public static void w(@Nullable String tag, @NonNull String message, int arg) {
+        t(tag).w(message, arg);
+    }
+
+    public static void w(@Nullable String tag, @NonNull String message, long arg) {
+        t(tag).w(message, arg);
+    }
+
+    public static void w(@Nullable String tag, @NonNull String message, float arg) {
+        t(tag).w(message, arg);
+    }
+
+    public static void w(@Nullable String tag, @NonNull String message, double arg) {
+        t(tag).w(message, arg);
+    }
+
+    public static void w(@Nullable String tag, @NonNull String message, char arg) {
+        t(tag).w(message, arg);
+    }
+
+    public static void w(@Nullable String tag, @NonNull String message, @Nullable Object arg) {
+        t(tag).w(message, arg);
+    }
+
+    public static void w(@Nullable String tag, @NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        t(tag).w(message, arg0, arg1);
+    }
+
+    public static void i(@Nullable String tag, @NonNull String message) {
+        t(tag).i(message, NO_ARGS);
+    }
+
+    public static void i(@Nullable String tag, @NonNull String message, int arg) {
+        t(tag).i(message, arg);
+    }
+
+    public static void i(@Nullable String tag, @NonNull String message, long arg) {
+        t(tag).i(message, arg);
+    }
+
+    public static void i(@Nullable String tag, @NonNull String message, float arg) {
+        t(tag).i(message, arg);
+    }
+
+    public static void i(@Nullable String tag, @NonNull String message, double arg) {
+        t(tag).i(message, arg);
+    }
+
+    public static void i(@Nullable String tag, @NonNull String message, char arg) {
+        t(tag).i(message, arg);
+    }
+
+    public static void i(@Nullable String tag, @NonNull String message, @Nullable Object arg) {
+        t(tag).i(message, arg);
+    }
+
+    public static void i(@Nullable String tag, @NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        t(tag).i(message, arg0, arg1);
+    }
+
+    public static void v(@Nullable String tag, @NonNull String message) {
+        t(tag).v(message, NO_ARGS);
+    }
+
+    public static void v(@Nullable String tag, @NonNull String message, int arg) {
+        t(tag).v(message, arg);
+    }
+
+    public static void v(@Nullable String tag, @NonNull String message, long arg) {
+        t(tag).v(message, arg);
+    }
+
+    public static void v(@Nullable String tag, @NonNull String message, float arg) {
+        t(tag).v(message, arg);
+    }
+
+    public static void v(@Nullable String tag, @NonNull String message, double arg) {
+        t(tag).v(message, arg);
+    }
+
+    public static void v(@Nullable String tag, @NonNull String message, char arg) {
+        t(tag).v(message, arg);
+    }
+
+    public static void v(@Nullable String tag, @NonNull String message, @Nullable Object arg) {
+        t(tag).v(message, arg);
+    }
+
+    public static void v(@Nullable String tag, @NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        t(tag).v(message, arg0, arg1);
+    }
+
+    public static void wtf(@Nullable String tag, @NonNull String message) {
+        t(tag).wtf(message, NO_ARGS);
+    }
+
+    public static void wtf(@Nullable String tag, @NonNull String message, int arg) {
+        t(tag).wtf(message, arg);
+    }
+
+    public static void wtf(@Nullable String tag, @NonNull String message, long arg) {
+        t(tag).wtf(message, arg);
+    }
+
+    public static void wtf(@Nullable String tag, @NonNull String message, float arg) {
+        t(tag).wtf(message, arg);
+    }
+
+    public static void wtf(@Nullable String tag, @NonNull String message, double arg) {
+        t(tag).wtf(message, arg);
+    }
+
+    public static void wtf(@Nullable String tag, @NonNull String message, char arg) {
+        t(tag).wtf(message, arg);
+    }
+
+    public static void wtf(@Nullable String tag, @NonNull String message, @Nullable Object arg) {
+        t(tag).wtf(message, arg);
+    }
+
+    public static void wtf(@Nullable String tag, @NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        t(tag).wtf(message, arg0, arg1);
+    }
+
+    public static void e(@Nullable String tag, @Nullable Throwable throwable, @NonNull String message) {
+        t(tag).e(throwable, message, NO_ARGS);
+    }
+
     /**
      * Formats the given json content and print it
      */
@@ -207,6 +425,174 @@ public class Logger {
         mPrinter.t(mTag).w(message, args);
     }
 
+    public void d(@NonNull String message, int arg) {
+        mPrinter.t(mTag).d(message, arg);
+    }
+
+    public void d(@NonNull String message, long arg) {
+        mPrinter.t(mTag).d(message, arg);
+    }
+
+    public void d(@NonNull String message, float arg) {
+        mPrinter.t(mTag).d(message, arg);
+    }
+
+    public void d(@NonNull String message, double arg) {
+        mPrinter.t(mTag).d(message, arg);
+    }
+
+    public void d(@NonNull String message, char arg) {
+        mPrinter.t(mTag).d(message, arg);
+    }
+
+    public void d(@NonNull String message, @Nullable Object arg) {
+        mPrinter.t(mTag).d(message, arg);
+    }
+
+    public void d(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        mPrinter.t(mTag).d(message, arg0, arg1);
+    }
+
+    public void e(@NonNull String message, int arg) {
+        mPrinter.t(mTag).e(message, arg);
+    }
+
+    public void e(@NonNull String message, long arg) {
+        mPrinter.t(mTag).e(message, arg);
+    }
+
+    public void e(@NonNull String message, float arg) {
+        mPrinter.t(mTag).e(message, arg);
+    }
+
+    public void e(@NonNull String message, double arg) {
+        mPrinter.t(mTag).e(message, arg);
+    }
+
+    public void e(@NonNull String message, char arg) {
+        mPrinter.t(mTag).e(message, arg);
+    }
+
+    public void e(@NonNull String message, @Nullable Object arg) {
+        mPrinter.t(mTag).e(message, arg);
+    }
+
+    public void e(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        mPrinter.t(mTag).e(message, arg0, arg1);
+    }
+
+    public void w(@NonNull String message, int arg) {
+        mPrinter.t(mTag).w(message, arg);
+    }
+
+    public void w(@NonNull String message, long arg) {
+        mPrinter.t(mTag).w(message, arg);
+    }
+
+    public void w(@NonNull String message, float arg) {
+        mPrinter.t(mTag).w(message, arg);
+    }
+
+    public void w(@NonNull String message, double arg) {
+        mPrinter.t(mTag).w(message, arg);
+    }
+
+    public void w(@NonNull String message, char arg) {
+        mPrinter.t(mTag).w(message, arg);
+    }
+
+    public void w(@NonNull String message, @Nullable Object arg) {
+        mPrinter.t(mTag).w(message, arg);
+    }
+
+    public void w(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        mPrinter.t(mTag).w(message, arg0, arg1);
+    }
+
+    public void i(@NonNull String message, int arg) {
+        mPrinter.t(mTag).i(message, arg);
+    }
+
+    public void i(@NonNull String message, long arg) {
+        mPrinter.t(mTag).i(message, arg);
+    }
+
+    public void i(@NonNull String message, float arg) {
+        mPrinter.t(mTag).i(message, arg);
+    }
+
+    public void i(@NonNull String message, double arg) {
+        mPrinter.t(mTag).i(message, arg);
+    }
+
+    public void i(@NonNull String message, char arg) {
+        mPrinter.t(mTag).i(message, arg);
+    }
+
+    public void i(@NonNull String message, @Nullable Object arg) {
+        mPrinter.t(mTag).i(message, arg);
+    }
+
+    public void i(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        mPrinter.t(mTag).i(message, arg0, arg1);
+    }
+
+    public void v(@NonNull String message, int arg) {
+        mPrinter.t(mTag).v(message, arg);
+    }
+
+    public void v(@NonNull String message, long arg) {
+        mPrinter.t(mTag).v(message, arg);
+    }
+
+    public void v(@NonNull String message, float arg) {
+        mPrinter.t(mTag).v(message, arg);
+    }
+
+    public void v(@NonNull String message, double arg) {
+        mPrinter.t(mTag).v(message, arg);
+    }
+
+    public void v(@NonNull String message, char arg) {
+        mPrinter.t(mTag).v(message, arg);
+    }
+
+    public void v(@NonNull String message, @Nullable Object arg) {
+        mPrinter.t(mTag).v(message, arg);
+    }
+
+    public void v(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        mPrinter.t(mTag).v(message, arg0, arg1);
+    }
+
+    public void wtf(@NonNull String message, int arg) {
+        mPrinter.t(mTag).wtf(message, arg);
+    }
+
+    public void wtf(@NonNull String message, long arg) {
+        mPrinter.t(mTag).wtf(message, arg);
+    }
+
+    public void wtf(@NonNull String message, float arg) {
+        mPrinter.t(mTag).wtf(message, arg);
+    }
+
+    public void wtf(@NonNull String message, double arg) {
+        mPrinter.t(mTag).wtf(message, arg);
+    }
+
+    public void wtf(@NonNull String message, char arg) {
+        mPrinter.t(mTag).wtf(message, arg);
+    }
+
+    public void wtf(@NonNull String message, @Nullable Object arg) {
+        mPrinter.t(mTag).wtf(message, arg);
+    }
+
+    public void wtf(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        mPrinter.t(mTag).wtf(message, arg0, arg1);
+    }
+
     /**
      * Formats the given json content and print it
      */
@@ -286,6 +672,8 @@ public class Logger {
         if (file.isDirectory()) {
             File[] files = file.listFiles();
             for (File f : files) {
+                // the committed length files and the mmap cache
+                if (f.getName().startsWith(".")) continue;
                 replaceFileNullChar(f, replacement);
             }
         } else {
@@ -4,6 +4,8 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.erlei.logger.adapter.LogAdapter;
 import com.erlei.logger.format.ArgsFormatter;
+import com.erlei.logger.format.MessageFormatter;
+import com.erlei.logger.format.PrintfMessageFormatter;
 import com.erlei.logger.format.SimpleArgsFormatter;
 
 import java.util.ArrayList;
@@ -19,6 +21,9 @@ public class LoggerFactory {
     static Printer sPrinter = new LoggerPrinter();
     @NonNull
     static ArgsFormatter sArgsFormatter = new SimpleArgsFormatter("\t");
+    @NonNull
+    static MessageFormatter sMessageFormatter = new PrintfMessageFormatter();
+    static volatile boolean sConcurrentDispatch;
 
     public static void printer(@NonNull Printer printer) {
         sPrinter = Objects.requireNonNull(printer);
@@ -28,6 +33,35 @@ public class LoggerFactory {
         sArgsFormatter = Objects.requireNonNull(argsFormatter);
     }
 
+    /**
+     * @param messageFormatter applies the args of {@code Printer.d(String, Object...)} and the like,
+     *                         {@link PrintfMessageFormatter} by default, or
+     *                         {@link com.erlei.logger.format.PlaceholderMessageFormatter} for {@code {}}
+     */
+    public static void messageFormatter(@NonNull MessageFormatter messageFormatter) {
+        sMessageFormatter = Objects.requireNonNull(messageFormatter);
+    }
+
+    /**
+     * Throws an IllegalStateException when a LogLine is recycled twice, for debug builds
+     * <pre><code>
+     *   LoggerFactory.checkRecycle(BuildConfig.DEBUG);
+     * </code></pre>
+     * Call it before the first log, it costs a lock on every obtain and recycle.
+     */
+    public static void checkRecycle(boolean enabled) {
+        Pools.setCheckRelease(enabled);
+    }
+
+    /**
+     * Lets the threads go through the adapters at the same time instead of one line at a time,
+     * see {@link LoggerPrinter#setConcurrentDispatch(boolean)}. Call it before the loggers are created.
+     */
+    public static void concurrentDispatch(boolean enabled) {
+        sConcurrentDispatch = enabled;
+        if (sPrinter instanceof LoggerPrinter) ((LoggerPrinter) sPrinter).setConcurrentDispatch(enabled);
+    }
+
     public static void addLogAdapter(@NonNull LogAdapter adapter) {
         adapters.add(Objects.requireNonNull(adapter));
     }
@@ -5,9 +5,9 @@ import android.support.annotation.Nullable;
 import android.support.annotation.RestrictTo;
 import com.erlei.logger.adapter.LogAdapter;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.erlei.logger.Logger.*;
 
@@ -20,7 +20,40 @@ public class LoggerPrinter implements Printer {
      */
     private final ThreadLocal<String> localTag = new ThreadLocal<>();
 
-    private final List<LogAdapter> logAdapters = new ArrayList<>();
+    private static final LogAdapter[] EMPTY_ADAPTERS = new LogAdapter[0];
+
+    /**
+     * Immutable copy-on-write snapshot of the adapters. It is replaced as a whole under
+     * {@link #adaptersLock} and read without locking on every log call.
+     */
+    private volatile LogAdapter[] logAdapters = EMPTY_ADAPTERS;
+    private final Object adaptersLock = new Object();
+
+    /**
+     * The lowest {@link LogAdapter#getMinLevel()} of the adapters, updated with {@link #logAdapters}.
+     * A line below it is dropped after this one volatile read, before a LogLine is obtained.
+     */
+    private volatile int minLevel = Integer.MAX_VALUE;
+
+    /**
+     * Every line gets a sequence number, with concurrent dispatch it restores the calling order downstream
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Lines are dispatched under the printer lock unless it is set, see {@link #setConcurrentDispatch(boolean)}
+     */
+    private volatile boolean concurrentDispatch = LoggerFactory.sConcurrentDispatch;
+
+    /**
+     * By default one line at a time goes through the adapters, so they see the lines in the calling
+     * order. With concurrent dispatch the threads fan out at the same time, formatting and
+     * synchronous disk writes no longer wait for other threads, and the adapters may take lines out
+     * of order, use {@link LogLine#getSequence()} to restore it.
+     */
+    public void setConcurrentDispatch(boolean concurrent) {
+        concurrentDispatch = concurrent;
+    }
 
     @Override
     public Printer t(String tag) {
@@ -38,7 +71,7 @@ public class LoggerPrinter implements Printer {
 
     @Override
     public void e(@NonNull String message, @Nullable Object... args) {
-        e(null, message, args);
+        e((Throwable) null, message, args);
     }
 
     @Override
@@ -66,16 +99,354 @@ public class LoggerPrinter implements Printer {
         log(ASSERT, null, message, args);
     }
 
+    @Override
+    public void d(@NonNull String message, int arg) {
+        LogLine line = obtain(DEBUG, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void d(@NonNull String message, long arg) {
+        LogLine line = obtain(DEBUG, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void d(@NonNull String message, float arg) {
+        LogLine line = obtain(DEBUG, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void d(@NonNull String message, double arg) {
+        LogLine line = obtain(DEBUG, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void d(@NonNull String message, char arg) {
+        LogLine line = obtain(DEBUG, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void d(@NonNull String message, @Nullable Object arg) {
+        LogLine line = obtain(DEBUG, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void d(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        LogLine line = obtain(DEBUG, message);
+        if (line == null) return;
+        line.setFixedArgs(arg0, arg1);
+        log(line);
+    }
+
+    @Override
+    public void e(@NonNull String message, int arg) {
+        LogLine line = obtain(ERROR, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void e(@NonNull String message, long arg) {
+        LogLine line = obtain(ERROR, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void e(@NonNull String message, float arg) {
+        LogLine line = obtain(ERROR, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void e(@NonNull String message, double arg) {
+        LogLine line = obtain(ERROR, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void e(@NonNull String message, char arg) {
+        LogLine line = obtain(ERROR, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void e(@NonNull String message, @Nullable Object arg) {
+        LogLine line = obtain(ERROR, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void e(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        LogLine line = obtain(ERROR, message);
+        if (line == null) return;
+        line.setFixedArgs(arg0, arg1);
+        log(line);
+    }
+
+    @Override
+    public void w(@NonNull String message, int arg) {
+        LogLine line = obtain(WARN, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void w(@NonNull String message, long arg) {
+        LogLine line = obtain(WARN, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void w(@NonNull String message, float arg) {
+        LogLine line = obtain(WARN, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void w(@NonNull String message, double arg) {
+        LogLine line = obtain(WARN, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void w(@NonNull String message, char arg) {
+        LogLine line = obtain(WARN, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void w(@NonNull String message, @Nullable Object arg) {
+        LogLine line = obtain(WARN, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void w(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        LogLine line = obtain(WARN, message);
+        if (line == null) return;
+        line.setFixedArgs(arg0, arg1);
+        log(line);
+    }
+
+    @Override
+    public void i(@NonNull String message, int arg) {
+        LogLine line = obtain(INFO, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void i(@NonNull String message, long arg) {
+        LogLine line = obtain(INFO, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void i(@NonNull String message, float arg) {
+        LogLine line = obtain(INFO, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void i(@NonNull String message, double arg) {
+        LogLine line = obtain(INFO, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void i(@NonNull String message, char arg) {
+        LogLine line = obtain(INFO, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void i(@NonNull String message, @Nullable Object arg) {
+        LogLine line = obtain(INFO, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void i(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        LogLine line = obtain(INFO, message);
+        if (line == null) return;
+        line.setFixedArgs(arg0, arg1);
+        log(line);
+    }
+
+    @Override
+    public void v(@NonNull String message, int arg) {
+        LogLine line = obtain(VERBOSE, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void v(@NonNull String message, long arg) {
+        LogLine line = obtain(VERBOSE, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void v(@NonNull String message, float arg) {
+        LogLine line = obtain(VERBOSE, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void v(@NonNull String message, double arg) {
+        LogLine line = obtain(VERBOSE, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void v(@NonNull String message, char arg) {
+        LogLine line = obtain(VERBOSE, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void v(@NonNull String message, @Nullable Object arg) {
+        LogLine line = obtain(VERBOSE, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void v(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        LogLine line = obtain(VERBOSE, message);
+        if (line == null) return;
+        line.setFixedArgs(arg0, arg1);
+        log(line);
+    }
+
+    @Override
+    public void wtf(@NonNull String message, int arg) {
+        LogLine line = obtain(ASSERT, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void wtf(@NonNull String message, long arg) {
+        LogLine line = obtain(ASSERT, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void wtf(@NonNull String message, float arg) {
+        LogLine line = obtain(ASSERT, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void wtf(@NonNull String message, double arg) {
+        LogLine line = obtain(ASSERT, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void wtf(@NonNull String message, char arg) {
+        LogLine line = obtain(ASSERT, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void wtf(@NonNull String message, @Nullable Object arg) {
+        LogLine line = obtain(ASSERT, message);
+        if (line == null) return;
+        line.setFixedArgs(arg);
+        log(line);
+    }
+
+    @Override
+    public void wtf(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        LogLine line = obtain(ASSERT, message);
+        if (line == null) return;
+        line.setFixedArgs(arg0, arg1);
+        log(line);
+    }
+
     @Override
     public void json(@Nullable String json) {
-        LogLine obtain = LogLine.obtain(DEBUG, getTag());
+        LogLine obtain = obtain(DEBUG);
+        if (obtain == null) return;
         obtain.setJson(json == null ? "" : json);
         log(obtain);
     }
 
     @Override
     public void xml(@Nullable String xml) {
-        LogLine obtain = LogLine.obtain(DEBUG, getTag());
+        LogLine obtain = obtain(DEBUG);
+        if (obtain == null) return;
         obtain.setXml(xml == null ? "" : xml);
         log(obtain);
     }
@@ -85,53 +456,128 @@ public class LoggerPrinter implements Printer {
                     @Nullable String tag,
                     @Nullable String message,
                     @Nullable Throwable throwable) {
+        if (level < minLevel || !isLoggable(level, tag)) return;
         log(LogLine.obtain(level, tag, message, throwable));
     }
 
     @Override
-    public synchronized void log(@NonNull LogLine line) {
-        boolean consumed = false;
+    public boolean isLoggable(@Level int level) {
+        return level >= minLevel;
+    }
+
+    /**
+     * When more than one adapter takes the line each of them gets a view of it and the line is
+     * released once the views are handed out, so no adapter changes what the others are given.
+     * A line taken by a single adapter is given to it as it is.
+     */
+    @Override
+    public void log(@NonNull LogLine line) {
+        if (concurrentDispatch) {
+            dispatch(line);
+        } else {
+            synchronized (this) {
+                dispatch(line);
+            }
+        }
+    }
+
+    private void dispatch(@NonNull LogLine line) {
+        line.setSequence(sequence.incrementAndGet());
+        LogAdapter consumer = null;
+        boolean shared = false;
         for (LogAdapter adapter : logAdapters) {
-            if (adapter.isLoggable(line)) {
-                adapter.log(consumed ? line.clone() : line);
-                consumed = true;
+            if (adapter.isLoggable(line.getLevel(), line.getTag()) && adapter.isLoggable(line)) {
+                if (consumer != null) {
+                    consumer.log(line.view());
+                    shared = true;
+                }
+                consumer = adapter;
             }
         }
-        if (!consumed) line.recycle();
+        if (consumer == null) {
+            line.recycle();
+        } else if (!shared) {
+            consumer.log(line);
+        } else {
+            LogLine view = line.view();
+            line.recycle();
+            consumer.log(view);
+        }
     }
 
     @Override
     public void clearLogAdapters() {
-        logAdapters.clear();
+        synchronized (adaptersLock) {
+            logAdapters = EMPTY_ADAPTERS;
+            minLevel = Integer.MAX_VALUE;
+        }
     }
 
     @Override
     public void args(Object... args) {
-        LogLine obtain = LogLine.obtain(DEBUG, getTag());
+        LogLine obtain = obtain(DEBUG);
+        if (obtain == null) return;
         obtain.setArgs(args);
         log(obtain);
     }
 
     @Override
     public void addAdapter(@NonNull LogAdapter adapter) {
-        logAdapters.add(Objects.requireNonNull(adapter));
+        Objects.requireNonNull(adapter);
+        synchronized (adaptersLock) {
+            LogAdapter[] adapters = Arrays.copyOf(logAdapters, logAdapters.length + 1);
+            adapters[adapters.length - 1] = adapter;
+            logAdapters = adapters;
+            minLevel = Math.min(minLevel, adapter.getMinLevel());
+        }
     }
 
-    /**
-     * This method is synchronized in order to avoid messy of logs' order.
-     */
-    private synchronized void log(int level,
-                                  @Nullable Throwable throwable,
-                                  @NonNull String message,
-                                  @Nullable Object... args) {
+    private void log(int level,
+                     @Nullable Throwable throwable,
+                     @NonNull String message,
+                     @Nullable Object... args) {
         Objects.requireNonNull(message);
-        LogLine obtain = LogLine.obtain(level, getTag());
+        LogLine obtain = obtain(level);
+        if (obtain == null) return;
         obtain.setThrowable(throwable);
         obtain.setFormat(message);
         obtain.setArgs(args);
         log(obtain);
     }
 
+    /**
+     * The line of the fixed arity methods, the args are set on it without boxing
+     */
+    @Nullable
+    private LogLine obtain(int level, @NonNull String message) {
+        Objects.requireNonNull(message);
+        LogLine obtain = obtain(level);
+        if (obtain != null) obtain.setFormat(message);
+        return obtain;
+    }
+
+    /**
+     * @return a line of the level, or null if no adapter accepts the level and the tag
+     */
+    @Nullable
+    private LogLine obtain(int level) {
+        if (level < minLevel) {
+            // the tag set by t() belongs to this call
+            localTag.remove();
+            return null;
+        }
+        String tag = getTag();
+        if (!isLoggable(level, tag)) return null;
+        return LogLine.obtain(level, tag);
+    }
+
+    private boolean isLoggable(int level, @Nullable String tag) {
+        for (LogAdapter adapter : logAdapters) {
+            if (adapter.isLoggable(level, tag)) return true;
+        }
+        return false;
+    }
+
     /**
      * @return the appropriate tag based on local or global
      */
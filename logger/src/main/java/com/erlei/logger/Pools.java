@@ -1,7 +1,19 @@
 package com.erlei.logger;
 
+import android.support.annotation.NonNull;
 import android.support.annotation.RestrictTo;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
  * Helper class for crating pools of objects. An example use looks like this:
  * <pre>
@@ -49,10 +61,31 @@ public final class Pools {
         boolean release(T instance);
     }
 
+    /**
+     * Detects an instance released twice, see {@link LoggerFactory#checkRecycle(boolean)},
+     * it is changed through {@link #setCheckRelease(boolean)}
+     */
+    static volatile boolean sCheckRelease;
+    /**
+     * Changes with the flag, the instances tracked before are forgotten
+     */
+    private static volatile int sCheckGeneration;
+
     private Pools() {
         /* do nothing - hiding constructor */
     }
 
+    /**
+     * An instance acquired or released while the check was off is not tracked, the instances
+     * tracked before the change are dropped so they are not reported as released twice
+     */
+    static synchronized void setCheckRelease(boolean enabled) {
+        if (sCheckRelease == enabled) return;
+        // the generation first, a pool which sees the new flag sees the new generation
+        sCheckGeneration++;
+        sCheckRelease = enabled;
+    }
+
     /**
      * Simple (non-synchronized) pool of objects.
      *
@@ -142,4 +175,237 @@ public final class Pools {
             }
         }
     }
+
+    /**
+     * Lock free pool of objects, the instances can be released on another thread than the one
+     * which acquired them.
+     * <p>
+     * Each thread keeps a few instances of its own, acquired and released without any atomic
+     * operation. The rest is shared through a bounded array of slots, taken and filled with
+     * compare and set, each thread starting from its own slot to keep the threads apart. At most
+     * maxPoolSize instances are shared, plus a few per thread.
+     * <p>
+     * Each thread counts its own hits and misses, the counts of all threads are added up only
+     * when they are read.
+     *
+     * @param <T> The pooled type.
+     */
+    static class ConcurrentPool<T> implements Pool<T> {
+
+        private static final int LOCAL_SIZE = 8;
+        private static final int STRIPES = 16;
+
+        private final AtomicReferenceArray<T> mShared;
+        private final AtomicInteger mNextStripe = new AtomicInteger();
+        /**
+         * The counters of the threads using the pool, guarded by itself
+         */
+        private final List<Counter> mCounters = new ArrayList<>();
+        /**
+         * The counts of the threads which died, guarded by {@link #mCounters}
+         */
+        private long mRetiredHits;
+        private long mRetiredMisses;
+        private final ThreadLocal<Local> mLocal = new ThreadLocal<Local>() {
+            @Override
+            protected Local initialValue() {
+                Counter counter = new Counter(Thread.currentThread());
+                synchronized (mCounters) {
+                    retireDeadThreads();
+                    mCounters.add(counter);
+                }
+                return new Local(mNextStripe.getAndIncrement() & (STRIPES - 1), counter);
+            }
+        };
+        /**
+         * The instances in the pool, only tracked while {@link #sCheckRelease} is set
+         */
+        private final Set<T> mPooled = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+        /**
+         * The generation of the check {@link #mPooled} belongs to, guarded by it
+         */
+        private int mPooledGeneration;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param maxPoolSize The max number of shared instances.
+         */
+        public ConcurrentPool(int maxPoolSize) {
+            if (maxPoolSize <= 0) {
+                throw new IllegalArgumentException("The max pool size must be > 0");
+            }
+            mShared = new AtomicReferenceArray<>(maxPoolSize);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T acquire() {
+            Local local = mLocal.get();
+            T instance;
+            if (local.mSize > 0) {
+                instance = (T) local.mItems[--local.mSize];
+                local.mItems[local.mSize] = null;
+            } else {
+                instance = acquireShared(local.mStripe);
+            }
+            Counter counter = local.mCounter;
+            // only this thread writes its counter, an ordered store is enough
+            if (instance != null) {
+                Counter.HITS.lazySet(counter, counter.mHits + 1);
+            } else {
+                Counter.MISSES.lazySet(counter, counter.mMisses + 1);
+            }
+            if (instance != null && sCheckRelease) {
+                synchronized (mPooled) {
+                    pooled().remove(instance);
+                }
+            }
+            return instance;
+        }
+
+        @Override
+        public boolean release(T instance) {
+            if (sCheckRelease) {
+                synchronized (mPooled) {
+                    if (!pooled().add(instance)) {
+                        throw new IllegalStateException("Already in the pool!");
+                    }
+                }
+            }
+            Local local = mLocal.get();
+            if (local.mSize < LOCAL_SIZE) {
+                local.mItems[local.mSize++] = instance;
+                return true;
+            }
+            if (releaseShared(local.mStripe, instance)) return true;
+            if (sCheckRelease) {
+                synchronized (mPooled) {
+                    pooled().remove(instance);
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the tracked instances, emptied if the check was switched since they were tracked
+         */
+        @NonNull
+        private Set<T> pooled() {
+            int generation = sCheckGeneration;
+            if (mPooledGeneration != generation) {
+                mPooled.clear();
+                mPooledGeneration = generation;
+            }
+            return mPooled;
+        }
+
+        /**
+         * @return the number of {@link #acquire()} calls which returned an instance
+         */
+        public long getHitCount() {
+            synchronized (mCounters) {
+                retireDeadThreads();
+                long sum = mRetiredHits;
+                for (Counter counter : mCounters) {
+                    sum += counter.mHits;
+                }
+                return sum;
+            }
+        }
+
+        /**
+         * @return the number of {@link #acquire()} calls which returned null
+         */
+        public long getMissCount() {
+            synchronized (mCounters) {
+                retireDeadThreads();
+                long sum = mRetiredMisses;
+                for (Counter counter : mCounters) {
+                    sum += counter.mMisses;
+                }
+                return sum;
+            }
+        }
+
+        /**
+         * Keeps the counts of the threads which died and drops their counters, called with the lock of
+         * {@link #mCounters} held
+         */
+        private void retireDeadThreads() {
+            Iterator<Counter> iterator = mCounters.iterator();
+            while (iterator.hasNext()) {
+                Counter counter = iterator.next();
+                Thread thread = counter.mThread.get();
+                if (thread == null || !thread.isAlive()) {
+                    mRetiredHits += counter.mHits;
+                    mRetiredMisses += counter.mMisses;
+                    iterator.remove();
+                }
+            }
+        }
+
+        private T acquireShared(int stripe) {
+            int length = mShared.length();
+            int start = start(stripe, length);
+            for (int i = 0; i < length; i++) {
+                int index = (start + i) % length;
+                T instance = mShared.get(index);
+                if (instance != null && mShared.compareAndSet(index, instance, null)) {
+                    return instance;
+                }
+            }
+            return null;
+        }
+
+        private boolean releaseShared(int stripe, @NonNull T instance) {
+            int length = mShared.length();
+            int start = start(stripe, length);
+            for (int i = 0; i < length; i++) {
+                int index = (start + i) % length;
+                if (mShared.get(index) == null && mShared.compareAndSet(index, null, instance)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int start(int stripe, int length) {
+            return (int) ((long) stripe * length / STRIPES);
+        }
+
+        /**
+         * The instances kept by a thread
+         */
+        private static final class Local {
+            final Object[] mItems = new Object[LOCAL_SIZE];
+            final int mStripe;
+            final Counter mCounter;
+            int mSize;
+
+            Local(int stripe, @NonNull Counter counter) {
+                mStripe = stripe;
+                mCounter = counter;
+            }
+        }
+
+        /**
+         * The counts of a thread, apart from its {@link Local} so the instances of a dead thread
+         * are not kept until the counts are read
+         */
+        private static final class Counter {
+            static final AtomicLongFieldUpdater<Counter> HITS =
+                    AtomicLongFieldUpdater.newUpdater(Counter.class, "mHits");
+            static final AtomicLongFieldUpdater<Counter> MISSES =
+                    AtomicLongFieldUpdater.newUpdater(Counter.class, "mMisses");
+
+            final WeakReference<Thread> mThread;
+            volatile long mHits;
+            volatile long mMisses;
+
+            Counter(@NonNull Thread thread) {
+                mThread = new WeakReference<>(thread);
+            }
+        }
+    }
 }
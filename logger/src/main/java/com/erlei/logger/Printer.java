@@ -28,6 +28,181 @@ public interface Printer {
 
     void wtf(@NonNull String message, @Nullable Object... args);
 
+    /*
+     * Fixed arity overloads for the common one and two arg calls, the LoggerPrinter keeps primitive
+     * args unboxed and allocates no varargs array until an adapter accepts the line. The defaults
+     * below box the args, a Printer is not required to override them. The arg is boxed to the same
+     * wrapper as it would be for the varargs method, except a byte or a short, which widens to an int.
+     */
+
+    default void d(@NonNull String message, int arg) {
+        d(message, new Object[]{arg});
+    }
+
+    default void d(@NonNull String message, long arg) {
+        d(message, new Object[]{arg});
+    }
+
+    default void d(@NonNull String message, float arg) {
+        d(message, new Object[]{arg});
+    }
+
+    default void d(@NonNull String message, double arg) {
+        d(message, new Object[]{arg});
+    }
+
+    default void d(@NonNull String message, char arg) {
+        d(message, new Object[]{arg});
+    }
+
+    default void d(@NonNull String message, @Nullable Object arg) {
+        d(message, new Object[]{arg});
+    }
+
+    default void d(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        d(message, new Object[]{arg0, arg1});
+    }
+
+    default void e(@NonNull String message, int arg) {
+        e(message, new Object[]{arg});
+    }
+
+    default void e(@NonNull String message, long arg) {
+        e(message, new Object[]{arg});
+    }
+
+    default void e(@NonNull String message, float arg) {
+        e(message, new Object[]{arg});
+    }
+
+    default void e(@NonNull String message, double arg) {
+        e(message, new Object[]{arg});
+    }
+
+    default void e(@NonNull String message, char arg) {
+        e(message, new Object[]{arg});
+    }
+
+    default void e(@NonNull String message, @Nullable Object arg) {
+        e(message, new Object[]{arg});
+    }
+
+    default void e(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        e(message, new Object[]{arg0, arg1});
+    }
+
+    default void w(@NonNull String message, int arg) {
+        w(message, new Object[]{arg});
+    }
+
+    default void w(@NonNull String message, long arg) {
+        w(message, new Object[]{arg});
+    }
+
+    default void w(@NonNull String message, float arg) {
+        w(message, new Object[]{arg});
+    }
+
+    default void w(@NonNull String message, double arg) {
+        w(message, new Object[]{arg});
+    }
+
+    default void w(@NonNull String message, char arg) {
+        w(message, new Object[]{arg});
+    }
+
+    default void w(@NonNull String message, @Nullable Object arg) {
+        w(message, new Object[]{arg});
+    }
+
+    default void w(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        w(message, new Object[]{arg0, arg1});
+    }
+
+    default void i(@NonNull String message, int arg) {
+        i(message, new Object[]{arg});
+    }
+
+    default void i(@NonNull String message, long arg) {
+        i(message, new Object[]{arg});
+    }
+
+    default void i(@NonNull String message, float arg) {
+        i(message, new Object[]{arg});
+    }
+
+    default void i(@NonNull String message, double arg) {
+        i(message, new Object[]{arg});
+    }
+
+    default void i(@NonNull String message, char arg) {
+        i(message, new Object[]{arg});
+    }
+
+    default void i(@NonNull String message, @Nullable Object arg) {
+        i(message, new Object[]{arg});
+    }
+
+    default void i(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        i(message, new Object[]{arg0, arg1});
+    }
+
+    default void v(@NonNull String message, int arg) {
+        v(message, new Object[]{arg});
+    }
+
+    default void v(@NonNull String message, long arg) {
+        v(message, new Object[]{arg});
+    }
+
+    default void v(@NonNull String message, float arg) {
+        v(message, new Object[]{arg});
+    }
+
+    default void v(@NonNull String message, double arg) {
+        v(message, new Object[]{arg});
+    }
+
+    default void v(@NonNull String message, char arg) {
+        v(message, new Object[]{arg});
+    }
+
+    default void v(@NonNull String message, @Nullable Object arg) {
+        v(message, new Object[]{arg});
+    }
+
+    default void v(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        v(message, new Object[]{arg0, arg1});
+    }
+
+    default void wtf(@NonNull String message, int arg) {
+        wtf(message, new Object[]{arg});
+    }
+
+    default void wtf(@NonNull String message, long arg) {
+        wtf(message, new Object[]{arg});
+    }
+
+    default void wtf(@NonNull String message, float arg) {
+        wtf(message, new Object[]{arg});
+    }
+
+    default void wtf(@NonNull String message, double arg) {
+        wtf(message, new Object[]{arg});
+    }
+
+    default void wtf(@NonNull String message, char arg) {
+        wtf(message, new Object[]{arg});
+    }
+
+    default void wtf(@NonNull String message, @Nullable Object arg) {
+        wtf(message, new Object[]{arg});
+    }
+
+    default void wtf(@NonNull String message, @Nullable Object arg0, @Nullable Object arg1) {
+        wtf(message, new Object[]{arg0, arg1});
+    }
+
     /**
      * Formats the given json content and print it
      */
@@ -44,6 +219,13 @@ public interface Printer {
 
     void log(@NonNull LogLine line);
 
+    /**
+     * @return false if no adapter prints lines of the level, a guard for expensive args
+     */
+    default boolean isLoggable(@Level int level) {
+        return true;
+    }
+
     void clearLogAdapters();
 
 }
@@ -0,0 +1,266 @@
+package com.erlei.logger;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RestrictTo;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded multi-producer / single-consumer queue backed by a preallocated ring.
+ * <p>
+ * Producers claim a sequence with one CAS (Disruptor style), copy the element into the
+ * slot and publish it by storing the sequence into the slot's availability flag.
+ * The consumer reads the flags without locking, no node is allocated per element and
+ * the memory used never grows beyond {@link #capacity()} slots.
+ * <p>
+ * Only one thread may wait in {@link #take()}. {@link #poll()} advances the head with a CAS,
+ * so producers may also call it to evict the oldest element when the buffer is full.
+ *
+ * @param <E> The element type.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class RingBuffer<E> {
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    private final int mMask;
+    private final Object[] mEntries;
+    /**
+     * The sequence published in each slot, a slot is readable when it equals the expected sequence
+     */
+    private final AtomicLongArray mPublished;
+    /**
+     * The last sequence claimed by producers
+     */
+    private final AtomicLong mClaimed = new AtomicLong(-1);
+    /**
+     * The last sequence taken from the head
+     */
+    private final AtomicLong mConsumed = new AtomicLong(-1);
+    @Nullable
+    private volatile Thread mWaitingConsumer;
+    private volatile boolean mClosed;
+
+    /**
+     * @param capacity The max number of elements, rounded up to a power of two.
+     */
+    public RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be > 0");
+        }
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity must be <= 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        mMask = size - 1;
+        mEntries = new Object[size];
+        mPublished = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mPublished.set(i, -1);
+        }
+    }
+
+    public int capacity() {
+        return mEntries.length;
+    }
+
+    /**
+     * @return the number of claimed but not yet consumed elements, it is only an estimate
+     * while producers are running
+     */
+    public int size() {
+        long size = mClaimed.get() - mConsumed.get();
+        return (int) Math.max(0, Math.min(size, mEntries.length));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the last sequence claimed by producers, -1 if nothing was ever offered
+     */
+    public long getClaimedSequence() {
+        return mClaimed.get();
+    }
+
+    /**
+     * @return the last sequence removed from the head, -1 if nothing was ever removed
+     */
+    public long getConsumedSequence() {
+        return mConsumed.get();
+    }
+
+    /**
+     * Wakes up the consumer, {@link #take()} returns null once the buffer is closed and empty.
+     * {@link #offer} and {@link #put} fail from now on, an element offered at the same time may
+     * still get in after the consumer has returned null.
+     */
+    public void close() {
+        mClosed = true;
+        Thread consumer = mWaitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * Inserts the element if there is a free slot, never blocks.
+     *
+     * @return false if the buffer is full or closed
+     */
+    public boolean offer(@NonNull E element) {
+        Objects.requireNonNull(element);
+        if (mClosed) return false;
+        long sequence;
+        do {
+            long claimed = mClaimed.get();
+            sequence = claimed + 1;
+            if (sequence - mEntries.length > mConsumed.get()) {
+                return false;
+            }
+        } while (!mClaimed.compareAndSet(sequence - 1, sequence));
+        publish(sequence, element);
+        return true;
+    }
+
+    /**
+     * Inserts the element, waiting for the consumer to free a slot if necessary.
+     *
+     * @return false if the buffer is closed before the element gets in
+     */
+    public boolean put(@NonNull E element) throws InterruptedException {
+        int tries = 0;
+        while (!offer(element)) {
+            if (mClosed) return false;
+            if (Thread.interrupted()) throw new InterruptedException();
+            tries = backOff(tries);
+        }
+        return true;
+    }
+
+    /**
+     * @return the head element, or null if nothing has been published yet
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        while (true) {
+            long consumed = mConsumed.get();
+            long sequence = consumed + 1;
+            int index = (int) sequence & mMask;
+            if (mPublished.get(index) != sequence) {
+                return null;
+            }
+            // the slot is not cleared: once the head moves a producer may already be reusing it,
+            // it keeps a stale reference at most until the slot is overwritten
+            E element = (E) mEntries[index];
+            if (mConsumed.compareAndSet(consumed, sequence)) {
+                return element;
+            }
+        }
+    }
+
+    /**
+     * Retrieves and removes the head element, waiting until one is published.
+     *
+     * @return the head element, or null if the buffer has been closed and is empty
+     */
+    @Nullable
+    public E take() throws InterruptedException {
+        return await(-1);
+    }
+
+    /**
+     * Retrieves and removes the head element, waiting up to the given time for one to be published.
+     *
+     * @return the head element, or null if the timeout elapsed
+     */
+    @Nullable
+    public E poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return await(Math.max(0, unit.toNanos(timeout)));
+    }
+
+    /**
+     * @param timeoutNanos negative to wait forever
+     */
+    @Nullable
+    private E await(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        E element;
+        int tries = 0;
+        while ((element = poll()) == null) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (mClosed && isEmpty()) return null;
+            long remaining = timeoutNanos < 0 ? Long.MAX_VALUE : deadline - System.nanoTime();
+            if (remaining <= 0) return null;
+            if (tries < SPIN_TRIES) {
+                tries++;
+                continue;
+            }
+            mWaitingConsumer = Thread.currentThread();
+            // re-check after announcing ourselves, a producer publishing now will unpark us
+            element = poll();
+            if (element == null && !mClosed) {
+                if (timeoutNanos < 0) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+            mWaitingConsumer = null;
+            if (element != null) break;
+        }
+        return element;
+    }
+
+    /**
+     * Moves up to maxElements published elements into the given collection without waiting.
+     *
+     * @return the number of elements transferred
+     */
+    public int drainTo(@NonNull Collection<? super E> collection, int maxElements) {
+        int count = 0;
+        E element;
+        while (count < maxElements && (element = poll()) != null) {
+            collection.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    private void publish(long sequence, E element) {
+        int index = (int) sequence & mMask;
+        mEntries[index] = element;
+        // a volatile store, so that it can not be reordered with the read of mWaitingConsumer below
+        mPublished.set(index, sequence);
+        Thread consumer = mWaitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private static int backOff(int tries) {
+        if (tries < SPIN_TRIES) {
+            return tries + 1;
+        }
+        if (tries < SPIN_TRIES * 2) {
+            Thread.yield();
+            return tries + 1;
+        }
+        LockSupport.parkNanos(PARK_NANOS);
+        return tries;
+    }
+}
@@ -6,6 +6,7 @@ import com.erlei.logger.format.FormatStrategy;
 import com.erlei.logger.format.TextFormatStrategy;
 import com.erlei.logger.printer.LogcatPrintStrategy;
 
+import java.util.List;
 import java.util.Objects;
 
 
@@ -34,4 +35,19 @@ public class AndroidLogAdapter implements LogAdapter {
     public void log(@NonNull LogLine logLine) {
         formatStrategy.log(logLine);
     }
+
+    @Override
+    public void log(@NonNull List<LogLine> logLines) {
+        formatStrategy.log(logLines);
+    }
+
+    @Override
+    public void flush() {
+        formatStrategy.flush();
+    }
+
+    @Override
+    public void close() {
+        formatStrategy.close();
+    }
 }
@@ -1,38 +1,154 @@
 package com.erlei.logger.adapter;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.erlei.logger.Level;
 import com.erlei.logger.LogLine;
+import com.erlei.logger.RingBuffer;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.erlei.logger.Logger.ASSERT;
+import static com.erlei.logger.Logger.WARN;
 
 /**
  * Created by lll on 2019/9/12
  * Email : erleizh@gmail.com
  * Describe : 异步的LogAdapter
+ * <p>
+ * 后台线程是守护线程，进程退出前调用 {@link #close(long)} 确保队列中的日志写入文件，
+ * 或者通过 {@link Builder#drainOnCrash(boolean)} 在崩溃时同步写入。
  */
 public class AsyncLogAdapter implements LogAdapter {
 
+    /**
+     * 默认队列容量，队列满的时候调用方会等待
+     */
+    public static final int DEFAULT_CAPACITY = 1024 * 8;
+
+    /**
+     * 默认每次最多从队列中取出的日志数量
+     */
+    public static final int DEFAULT_BATCH_SIZE = 128;
+
+    /**
+     * Used by {@link #flush()} and {@link #close()}
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 3000;
+
+    private static final String TAG = "AsyncLogAdapter";
+    private static final long CRASH_JOIN_MILLIS = 1000;
+    private static final long FLUSH_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * What {@link #log(LogLine)} does when the queue is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until the consumer frees a slot
+         */
+        BLOCK,
+        /**
+         * Drop the line being logged
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest queued line to make room for the new one
+         */
+        DROP_OLDEST,
+        /**
+         * Drop lines below {@link Builder#dropLevel(int)}, wait for the others
+         */
+        DROP_BELOW_LEVEL,
+        /**
+         * Run the wrapped adapter synchronously on the calling thread
+         */
+        CALLER_RUNS
+    }
+
     private final LogAdapter mLogAdapter;
-    private final LinkedBlockingQueue<LogLine> log = new LinkedBlockingQueue<>();
+    private final RingBuffer<LogLine> mQueue;
+    private final OverflowPolicy mPolicy;
+    private final int mDropLevel;
+    private final int mBatchSize;
+    private final long mMaxBatchDelayMillis;
+    private final AtomicLongArray mDropped = new AtomicLongArray(OverflowPolicy.values().length);
+    /**
+     * Lines dropped since the last "N lines dropped" record
+     */
+    private final AtomicLong mPendingDropped = new AtomicLong();
     private final Thread mThread;
+    /**
+     * The last queue sequence that has been handed to the wrapped adapter
+     */
+    private volatile long mProcessedSequence = -1;
+    private volatile boolean mClosed;
+    /**
+     * Set once the consumer has returned, a line which got into the closed queue after it is discarded
+     */
+    private volatile boolean mTerminated;
 
     public AsyncLogAdapter(@NonNull LogAdapter adapter) {
-        mLogAdapter = adapter;
+        this(newBuilder(adapter));
+    }
+
+    /**
+     * @param adapter  the adapter called on the background thread
+     * @param capacity the max number of queued lines, rounded up to a power of two
+     */
+    public AsyncLogAdapter(@NonNull LogAdapter adapter, int capacity) {
+        this(newBuilder(adapter).capacity(capacity));
+    }
+
+    private AsyncLogAdapter(@NonNull Builder builder) {
+        mLogAdapter = builder.adapter;
+        mQueue = new RingBuffer<>(builder.capacity);
+        mPolicy = builder.policy;
+        mDropLevel = builder.dropLevel;
+        mBatchSize = builder.batchSize;
+        mMaxBatchDelayMillis = builder.maxBatchDelayMillis;
         mThread = new Thread(() -> {
-            while (!Thread.interrupted()) {
-                LogLine logLine;
+            List<LogLine> batch = new ArrayList<>(mBatchSize);
+            boolean open = true;
+            while (open) {
                 try {
-                    logLine = log.take();
-                    if (logLine != null) {
-                        mLogAdapter.log(logLine);
-                    }
+                    open = takeBatch(batch);
                 } catch (InterruptedException e) {
                     e.printStackTrace();
                 }
+                if (batch.isEmpty()) continue;
+                long consumed = mQueue.getConsumedSequence();
+                try {
+                    mLogAdapter.log(batch);
+                } catch (RuntimeException e) {
+                    // the pipeline recycled the lines, also the ones it did not get to
+                    e.printStackTrace();
+                }
+                batch.clear();
+                mProcessedSequence = consumed;
+                reportDropped();
             }
+            mTerminated = true;
+            discardQueued();
         });
         mThread.setName(getClass().getSimpleName());
+        mThread.setDaemon(true);
         mThread.start();
+        if (builder.drainOnCrash) {
+            installCrashHandler();
+        }
+    }
+
+    @NonNull
+    public static Builder newBuilder(@NonNull LogAdapter adapter) {
+        return new Builder(adapter);
     }
 
     @Override
@@ -40,13 +156,301 @@ public class AsyncLogAdapter implements LogAdapter {
         return mLogAdapter.isLoggable(logLine);
     }
 
+    @Override
+    public int getMinLevel() {
+        return mLogAdapter.getMinLevel();
+    }
+
+    @Override
+    public boolean isLoggable(@Level int level, @Nullable String tag) {
+        return mLogAdapter.isLoggable(level, tag);
+    }
+
     @Override
     public void log(@NonNull LogLine logLine) {
+        if (mClosed) {
+            logLine.recycle();
+            return;
+        }
+        if (!mQueue.offer(logLine)) {
+            overflow(logLine);
+        }
+        // the consumer may have returned between the check of mClosed and the offer
+        if (mTerminated) discardQueued();
+    }
+
+    private void overflow(@NonNull LogLine logLine) {
+        if (mQueue.isClosed()) {
+            logLine.recycle();
+            return;
+        }
+        switch (mPolicy) {
+            case DROP_NEWEST:
+                dropped(logLine);
+                break;
+            case DROP_OLDEST:
+                while (!mQueue.offer(logLine)) {
+                    if (mQueue.isClosed()) {
+                        logLine.recycle();
+                        return;
+                    }
+                    LogLine oldest = mQueue.poll();
+                    if (oldest != null) dropped(oldest);
+                }
+                break;
+            case DROP_BELOW_LEVEL:
+                if (logLine.getLevel() < mDropLevel) {
+                    dropped(logLine);
+                } else {
+                    put(logLine);
+                }
+                break;
+            case CALLER_RUNS:
+                mLogAdapter.log(logLine);
+                break;
+            case BLOCK:
+            default:
+                put(logLine);
+                break;
+        }
+    }
+
+    @Override
+    public void flush() {
+        flush(DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Waits until every line queued before this call has been written, then flushes the wrapped adapter.
+     *
+     * @param timeoutMillis the max time to wait for the queue to drain
+     * @return false if the queue could not be drained in time
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = mQueue.getClaimedSequence();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        boolean drained = true;
+        if (Thread.currentThread() != mThread) {
+            while (mProcessedSequence < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !mThread.isAlive()) {
+                    drained = false;
+                    break;
+                }
+                LockSupport.parkNanos(this, Math.min(remaining, FLUSH_POLL_NANOS));
+            }
+        }
+        mLogAdapter.flush();
+        return drained;
+    }
+
+    @Override
+    public void close() {
+        close(DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stops accepting lines, waits for the queue to be written and closes the wrapped adapter.
+     * Lines logged after this call are discarded.
+     *
+     * @param timeoutMillis the max time to wait for the queue to drain
+     * @return false if the queue could not be drained in time
+     */
+    public boolean close(long timeoutMillis) {
+        mClosed = true;
+        mQueue.close();
+        boolean drained = join(mThread, timeoutMillis);
+        mLogAdapter.close();
+        return drained;
+    }
+
+    /**
+     * @return the number of lines dropped by the given policy since this adapter was created
+     */
+    public long getDroppedCount(@NonNull OverflowPolicy policy) {
+        return mDropped.get(policy.ordinal());
+    }
+
+    /**
+     * Waits for the first line, then collects up to batchSize lines,
+     * waiting at most maxBatchDelay for the batch to fill up
+     */
+    private boolean takeBatch(@NonNull List<LogLine> batch) throws InterruptedException {
+        LogLine first = mQueue.take();
+        if (first == null) return false;
+        batch.add(first);
+        mQueue.drainTo(batch, mBatchSize - batch.size());
+        if (mMaxBatchDelayMillis <= 0) return true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mMaxBatchDelayMillis);
+        while (batch.size() < mBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            LogLine logLine = mQueue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (logLine == null) break;
+            batch.add(logLine);
+            mQueue.drainTo(batch, mBatchSize - batch.size());
+        }
+        return true;
+    }
+
+    private void installCrashHandler() {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
+            drainOnCrash(thread, throwable);
+            if (previous != null) {
+                previous.uncaughtException(thread, throwable);
+            }
+        });
+    }
+
+    /**
+     * Lets the consumer finish the queue, writes whatever is left on the crashing thread,
+     * then closes the wrapped adapter so the log file is complete.
+     */
+    private void drainOnCrash(@NonNull Thread thread, @NonNull Throwable throwable) {
+        try {
+            mClosed = true;
+            mQueue.close();
+            if (thread != mThread) {
+                join(mThread, CRASH_JOIN_MILLIS);
+            }
+            LogLine logLine;
+            while ((logLine = mQueue.poll()) != null) {
+                mLogAdapter.log(logLine);
+            }
+            LogLine crash = LogLine.obtain(ASSERT, TAG, "Uncaught exception in thread " + thread.getName(), throwable);
+            if (mLogAdapter.isLoggable(crash)) {
+                mLogAdapter.log(crash);
+            } else {
+                crash.recycle();
+            }
+            mLogAdapter.close();
+        } catch (Throwable e) {
+            // never hide the original crash
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean join(@NonNull Thread thread, long timeoutMillis) {
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    /**
+     * Waits for a free slot, the line is recycled if the queue is closed meanwhile
+     */
+    private void put(@NonNull LogLine logLine) {
         try {
-            log.put(logLine);
+            if (mQueue.put(logLine)) return;
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        logLine.recycle();
+    }
+
+    private void discardQueued() {
+        LogLine logLine;
+        while ((logLine = mQueue.poll()) != null) {
+            logLine.recycle();
+        }
+    }
+
+    private void dropped(@NonNull LogLine logLine) {
+        mDropped.incrementAndGet(mPolicy.ordinal());
+        mPendingDropped.incrementAndGet();
+        logLine.recycle();
+    }
+
+    /**
+     * Emits a synthetic record once the queue has drained below half of its capacity
+     */
+    private void reportDropped() {
+        if (mPendingDropped.get() == 0 || mQueue.size() > mQueue.capacity() / 2) return;
+        long count = mPendingDropped.getAndSet(0);
+        if (count == 0) return;
+        LogLine line = LogLine.obtain(WARN, TAG,
+                String.format(Locale.US, "%d lines dropped, queue full (%s)", count, mPolicy));
+        if (mLogAdapter.isLoggable(line)) {
+            mLogAdapter.log(line);
+        } else {
+            line.recycle();
+        }
     }
 
+    public static final class Builder {
+
+        private final LogAdapter adapter;
+        private int capacity = DEFAULT_CAPACITY;
+        private OverflowPolicy policy = OverflowPolicy.BLOCK;
+        private int dropLevel = WARN;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private long maxBatchDelayMillis = 0;
+        private boolean drainOnCrash;
+
+        private Builder(@NonNull LogAdapter adapter) {
+            this.adapter = Objects.requireNonNull(adapter);
+        }
+
+        /**
+         * @param capacity the max number of queued lines, rounded up to a power of two
+         */
+        @NonNull
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        @NonNull
+        public Builder overflowPolicy(@NonNull OverflowPolicy policy) {
+            this.policy = Objects.requireNonNull(policy);
+            return this;
+        }
+
+        /**
+         * @param level lines below this level are dropped by {@link OverflowPolicy#DROP_BELOW_LEVEL}
+         */
+        @NonNull
+        public Builder dropLevel(@Level int level) {
+            this.dropLevel = level;
+            return this;
+        }
+
+        /**
+         * @param batchSize the max number of lines formatted and written in one call
+         */
+        @NonNull
+        public Builder batchSize(int batchSize) {
+            if (batchSize <= 0) throw new IllegalArgumentException("The batch size must be > 0");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param millis how long the consumer may wait for a batch to fill up, 0 writes whatever is queued
+         */
+        @NonNull
+        public Builder maxBatchDelay(long millis) {
+            this.maxBatchDelayMillis = millis;
+            return this;
+        }
+
+        /**
+         * @param drainOnCrash install a default uncaught exception handler which writes the queued lines
+         *                     synchronously and closes the wrapped adapter before the process dies
+         */
+        @NonNull
+        public Builder drainOnCrash(boolean drainOnCrash) {
+            this.drainOnCrash = drainOnCrash;
+            return this;
+        }
+
+        @NonNull
+        public AsyncLogAdapter build() {
+            return new AsyncLogAdapter(this);
+        }
+    }
 }
@@ -5,9 +5,11 @@ import com.erlei.logger.LogLine;
 import com.erlei.logger.format.FormatStrategy;
 import com.erlei.logger.format.TextFormatStrategy;
 
+import java.util.List;
 import java.util.Objects;
 
 import static com.erlei.logger.Logger.DEBUG;
+import static com.erlei.logger.Logger.INFO;
 
 
 /**
@@ -32,9 +34,29 @@ public class DiskLogAdapter implements LogAdapter {
         return logLine.getLevel() > DEBUG;
     }
 
+    @Override
+    public int getMinLevel() {
+        return INFO;
+    }
+
     @Override
     public void log(@NonNull LogLine logLine) {
         formatStrategy.log(logLine);
     }
 
+    @Override
+    public void log(@NonNull List<LogLine> logLines) {
+        formatStrategy.log(logLines);
+    }
+
+    @Override
+    public void flush() {
+        formatStrategy.flush();
+    }
+
+    @Override
+    public void close() {
+        formatStrategy.close();
+    }
+
 }
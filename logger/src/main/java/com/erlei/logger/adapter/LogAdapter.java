@@ -1,8 +1,14 @@
 package com.erlei.logger.adapter;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.erlei.logger.Level;
 import com.erlei.logger.LogLine;
 
+import java.util.List;
+
+import static com.erlei.logger.Logger.VERBOSE;
+
 /**
  * Provides a common interface to emits logs through. This is a required contract for Logger.
  *
@@ -22,9 +28,61 @@ public interface LogAdapter {
     boolean isLoggable(@NonNull LogLine logLine);
 
     /**
-     * Each log will use this pipeline
+     * The lowest level this adapter accepts, it must not change once the adapter is added.
+     * When every adapter rejects a level the printer returns before a LogLine is obtained.
+     *
+     * @return the minimum level
+     */
+    @Level
+    default int getMinLevel() {
+        return VERBOSE;
+    }
+
+    /**
+     * Checked before a LogLine is obtained and again before {@link #isLoggable(LogLine)},
+     * a filter on the level and the tag belongs here rather than in {@link #isLoggable(LogLine)}.
+     *
+     * @param level log level
+     * @param tag   the tag given by the caller, null for the default tag
+     * @return false if lines of this level and tag are never printed
+     */
+    default boolean isLoggable(@Level int level, @Nullable String tag) {
+        return level >= getMinLevel();
+    }
+
+    /**
+     * Each log will use this pipeline, the line is recycled by the pipeline, also when it throws
      *
      * @param logLine log info
      */
     void log(@NonNull LogLine logLine);
+
+    /**
+     * Batched pipeline used by {@link AsyncLogAdapter}, every line has already passed {@link #isLoggable(LogLine)}.
+     * Implementations should format the whole batch and hand it to the writer in one call.
+     *
+     * @param logLines log infos, the list is reused by the caller after this method returns
+     */
+    default void log(@NonNull List<LogLine> logLines) {
+        for (int i = 0; i < logLines.size(); i++) {
+            try {
+                log(logLines.get(i));
+            } catch (RuntimeException e) {
+                LogLine.recycleAll(logLines, i + 1);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Flushes everything logged so far to its destination
+     */
+    default void flush() {
+    }
+
+    /**
+     * Flushes and releases the underlying resources, such as the current log file
+     */
+    default void close() {
+    }
 }
\ No newline at end of file
@@ -18,7 +18,6 @@ public class AlignArgsFormatter implements ArgsFormatter {
 
 
     protected String divider = "|";
-    protected StringBuilder sb = new StringBuilder();
     protected HashMap<Class, String> map = new HashMap<>();
     protected int width = 8;
     private boolean alignLeft = false;
@@ -111,7 +110,7 @@ public class AlignArgsFormatter implements ArgsFormatter {
 
     @NonNull
     public String genFormatString(@NonNull Object... args) {
-        sb.delete(0, sb.length());
+        StringBuilder sb = new StringBuilder(args.length * 6);
         for (int i = 0; i < args.length; i++) {
             sb.append("%");
             sb.append(i + 1).append("$");
@@ -0,0 +1,88 @@
+package com.erlei.logger.format;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.erlei.logger.LogLine;
+import com.erlei.logger.printer.DiskPrintStrategy;
+import com.erlei.logger.printer.PrintStrategy;
+import com.erlei.logger.writer.BinaryLogWriter;
+
+import java.util.List;
+
+
+/**
+ * Describe : write log to binary file
+ * <p>
+ * No text is built here, the lines go to the print strategy as they are and
+ * {@link BinaryLogWriter} encodes their fields into records. The default print strategy
+ * wraps its writers with {@link BinaryLogWriter}, a custom one must do the same, see
+ * {@link BinaryLogWriter#factory}. Decode the files with {@link com.erlei.logger.reader.BinaryLogDecoder}.
+ */
+public class BinaryFormatStrategy implements FormatStrategy {
+
+    private final Builder mBuilder;
+
+    private BinaryFormatStrategy(Builder builder) {
+        mBuilder = builder;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public void log(@NonNull LogLine logLine) {
+        logLine.setModuleName(mBuilder.tag);
+        mBuilder.mPrintStrategy.print(logLine);
+    }
+
+    @Override
+    public void log(@NonNull List<LogLine> logLines) {
+        for (LogLine logLine : logLines) {
+            logLine.setModuleName(mBuilder.tag);
+        }
+        mBuilder.mPrintStrategy.print(logLines);
+    }
+
+    @Override
+    public void flush() {
+        mBuilder.mPrintStrategy.flush();
+    }
+
+    @Override
+    public void close() {
+        mBuilder.mPrintStrategy.close();
+    }
+
+
+    public static final class Builder {
+
+        PrintStrategy mPrintStrategy;
+        String tag;
+
+        private Builder() {
+        }
+
+        @NonNull
+        public Builder logStrategy(@Nullable PrintStrategy val) {
+            mPrintStrategy = val;
+            return this;
+        }
+
+        @NonNull
+        public Builder tag(@Nullable String tag) {
+            this.tag = tag;
+            return this;
+        }
+
+        @NonNull
+        public BinaryFormatStrategy build() {
+            if (mPrintStrategy == null) {
+                mPrintStrategy = DiskPrintStrategy.newBuilder()
+                        .writerFactory(BinaryLogWriter.factory(DiskPrintStrategy.defaultWriterFactory()))
+                        .suffix(".logb").build();
+            }
+            return new BinaryFormatStrategy(this);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.erlei.logger.writer.LogWriter;
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 
@@ -24,21 +25,25 @@ public class CsvFormatStrategy implements FormatStrategy {
     private static final String NEW_LINE = System.getProperty("line.separator");
     private static final String NEW_LINE_REPLACEMENT = " <br> ";
     private static final String SEPARATOR = ",";
+    private static final ThreadLocal<StringBuilder> sBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
 
-    @NonNull
+    @Nullable
     private final Date date;
     @NonNull
-    private final SimpleDateFormat dateFormat;
+    private final TimestampFormatter timestamp;
     @NonNull
     private final PrintStrategy mPrintStrategy;
     @Nullable
     private final String globalTag;
 
-    private StringBuilder builder = new StringBuilder(32);
-
     private CsvFormatStrategy(@NonNull Builder builder) {
         date = builder.date;
-        dateFormat = builder.dateFormat;
+        timestamp = new TimestampFormatter(builder.dateFormat);
         mPrintStrategy = builder.mPrintStrategy;
         globalTag = builder.tag;
     }
@@ -50,17 +55,57 @@ public class CsvFormatStrategy implements FormatStrategy {
 
     @Override
     public void log(@NonNull LogLine logLine) {
+        try {
+            format(logLine);
+        } catch (RuntimeException e) {
+            logLine.recycle();
+            throw e;
+        }
+        mPrintStrategy.print(logLine);
+    }
+
+    @Override
+    public void log(@NonNull List<LogLine> logLines) {
+        try {
+            for (LogLine logLine : logLines) {
+                format(logLine);
+            }
+        } catch (RuntimeException e) {
+            LogLine.recycleAll(logLines, 0);
+            throw e;
+        }
+        mPrintStrategy.print(logLines);
+    }
+
+    @Override
+    public void flush() {
+        mPrintStrategy.flush();
+    }
+
+    @Override
+    public void close() {
+        mPrintStrategy.close();
+    }
+
+    /**
+     * Same as {@link TextFormatStrategy}, one builder per thread and the line keeps the UTF-8 bytes
+     */
+    private void format(@NonNull LogLine logLine) {
         Objects.requireNonNull(logLine);
 
         logLine.setModuleName(this.globalTag);
-        date.setTime(System.currentTimeMillis());
-        builder.delete(0, builder.length());
+        long time = date != null ? date.getTime() : logLine.getTime();
+        // before the builder is taken, see TextFormatStrategy
+        String message = logLine.getMessage();
+        StringBuilder builder = sBuilder.get();
+        builder.setLength(0);
+        if (builder.capacity() > 8 * 1024) builder.trimToSize();
         // machine-readable date/time
-        builder.append(date.getTime());
+        builder.append(time);
 
         // human-readable date/time
         builder.append(SEPARATOR);
-        builder.append(dateFormat.format(date));
+        timestamp.format(time, builder);
 
         // Level
         builder.append(SEPARATOR);
@@ -71,7 +116,6 @@ public class CsvFormatStrategy implements FormatStrategy {
         builder.append(logLine.getFulTag());
 
         // message
-        String message = logLine.getMessage();
         if (message.contains(NEW_LINE)) {
             // a new line would break the CSV format, so we replace it here
             message = message.replaceAll(NEW_LINE, NEW_LINE_REPLACEMENT);
@@ -81,8 +125,7 @@ public class CsvFormatStrategy implements FormatStrategy {
 
         // new line
         builder.append(NEW_LINE);
-        logLine.setMessage(builder.toString());
-        mPrintStrategy.print(logLine);
+        logLine.setEncodedMessage(builder);
     }
 
 
@@ -96,6 +139,9 @@ public class CsvFormatStrategy implements FormatStrategy {
         private Builder() {
         }
 
+        /**
+         * @param val a fixed time for every line, the time of the line by default
+         */
         @NonNull
         public Builder date(@Nullable Date val) {
             date = val;
@@ -122,9 +168,6 @@ public class CsvFormatStrategy implements FormatStrategy {
 
         @NonNull
         public CsvFormatStrategy build() {
-            if (date == null) {
-                date = new Date();
-            }
             if (dateFormat == null) {
                 dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.getDefault());
             }
@@ -1,8 +1,11 @@
 package com.erlei.logger.format;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import com.erlei.logger.LogLine;
 
+import java.util.List;
+
 /**
  * Used to determine how messages should be printed or saved.
  *
@@ -13,4 +16,42 @@ import com.erlei.logger.LogLine;
 public interface FormatStrategy {
 
     void log(@NonNull LogLine logLine);
+
+    /**
+     * Strategies with equal keys render a line to the same message. When adapters with equal keys
+     * take the same line, the first one renders it and the others reuse the message, see
+     * {@link LogLine#setFormatted(Object, CharSequence)}.
+     *
+     * @return a key made of the settings which change the message, null if it is never shared
+     */
+    @Nullable
+    default Object getFormatKey() {
+        return null;
+    }
+
+    /**
+     * Formats the whole batch, then prints it with a single call to the print strategy
+     */
+    default void log(@NonNull List<LogLine> logLines) {
+        for (int i = 0; i < logLines.size(); i++) {
+            try {
+                log(logLines.get(i));
+            } catch (RuntimeException e) {
+                LogLine.recycleAll(logLines, i + 1);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Flushes the print strategy
+     */
+    default void flush() {
+    }
+
+    /**
+     * Closes the print strategy
+     */
+    default void close() {
+    }
 }
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -38,10 +39,42 @@ public class JsonFormatStrategy implements FormatStrategy {
 
     @Override
     public void log(@NonNull LogLine logLine) {
+        try {
+            format(logLine);
+        } catch (RuntimeException e) {
+            logLine.recycle();
+            throw e;
+        }
+        mBuilder.mPrintStrategy.print(logLine);
+    }
+
+    @Override
+    public void log(@NonNull List<LogLine> logLines) {
+        try {
+            for (LogLine logLine : logLines) {
+                format(logLine);
+            }
+        } catch (RuntimeException e) {
+            LogLine.recycleAll(logLines, 0);
+            throw e;
+        }
+        mBuilder.mPrintStrategy.print(logLines);
+    }
+
+    @Override
+    public void flush() {
+        mBuilder.mPrintStrategy.flush();
+    }
+
+    @Override
+    public void close() {
+        mBuilder.mPrintStrategy.close();
+    }
+
+    private void format(@NonNull LogLine logLine) {
         logLine.setModuleName(this.mBuilder.tag);
         if (mBuilder.date != null) logLine.setTime(mBuilder.date.getTime());
         logLine.setMessage(mBuilder.mSerializer.toJson(logLine));
-        mBuilder.mPrintStrategy.print(logLine);
     }
 
 
@@ -55,6 +88,9 @@ public class JsonFormatStrategy implements FormatStrategy {
         private Builder() {
         }
 
+        /**
+         * @param val a fixed time for every line, the time of the line by default
+         */
         @NonNull
         public Builder date(@Nullable Date val) {
             date = val;
@@ -81,9 +117,6 @@ public class JsonFormatStrategy implements FormatStrategy {
 
         @NonNull
         public JsonFormatStrategy build() {
-            if (date == null) {
-                date = new Date();
-            }
             if (mPrintStrategy == null) {
                 mPrintStrategy = DiskPrintStrategy.newBuilder()
                         .fileListener(new JsonFileListener())
@@ -113,8 +146,8 @@ public class JsonFormatStrategy implements FormatStrategy {
                         .key("time").value(logLine.getTime())
                         .key("tag").value(logLine.getFulTag());
 
-                Map<String, String> extra = logLine.getExtra();
-                if (!extra.isEmpty()) {
+                Map<String, String> extra = logLine.peekExtra();
+                if (extra != null && !extra.isEmpty()) {
                     stringer.key("extra").value(new JSONObject(extra));
                 }
                 Throwable throwable = logLine.getThrowable();
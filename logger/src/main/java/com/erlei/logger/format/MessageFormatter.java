@@ -0,0 +1,25 @@
+package com.erlei.logger.format;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Formats the message of {@code Printer.d(String, Object...)} and the like with its args
+ *
+ * @see PrintfMessageFormatter
+ * @see PlaceholderMessageFormatter
+ */
+public interface MessageFormatter {
+
+    @NonNull
+    String format(@NonNull String format, @NonNull Object... args);
+
+    /**
+     * @return a Throwable passed as the last arg and not used by the format, it is printed like
+     * the throwable of {@code Printer.e(Throwable, String, Object...)}, null if there is none
+     */
+    @Nullable
+    default Throwable getThrowable(@NonNull String format, @NonNull Object... args) {
+        return null;
+    }
+}
@@ -0,0 +1,287 @@
+package com.erlei.logger.format;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+
+/**
+ * Describe : 编译后缓存的格式化模板, 代替 {@link String#format}
+ * <p>
+ * {@link String#format} parses the pattern with a regex and allocates a {@link Formatter} and a
+ * {@link StringBuilder} on every call. A template parses its format string once into literal and
+ * specifier segments and renders into a builder reused by the thread. {@code %s}, {@code %d},
+ * {@code %f}, {@code %.Nf}, {@code %n} and {@code %%} are rendered here, any other specifier
+ * with a {@link Formatter}. The output is the same as {@link String#format(String, Object...)},
+ * exceptions included.
+ * <p>
+ * Templates are cached by the identity of the format string in a small direct mapped table, format
+ * strings are usually literals, so the same instance comes back line after line.
+ */
+public final class MessageTemplate {
+
+    private static final int CACHE_SIZE = 512;
+    private static final MessageTemplate[] sCache = new MessageTemplate[CACHE_SIZE];
+    private static final ThreadLocal<Renderer> sRenderer = new ThreadLocal<Renderer>() {
+        @Override
+        protected Renderer initialValue() {
+            return new Renderer();
+        }
+    };
+
+    private static final char STRING = 's';
+    private static final char DECIMAL = 'd';
+    private static final char FLOAT = 'f';
+    /**
+     * Any other specifier, rendered with a {@link Formatter}
+     */
+    private static final char OTHER = 0;
+    /**
+     * A specifier which takes no arg, such as {@code %5%}
+     */
+    private static final char NO_ARG = 1;
+
+    @NonNull
+    private final String mFormat;
+    /**
+     * Literal text, null for a specifier
+     */
+    private final String[] mLiterals;
+    private final char[] mConversions;
+    private final int[] mPrecisions;
+    private final String[] mSpecifiers;
+    /**
+     * The format uses explicit or relative indexes, or is invalid, {@link String#format} handles it,
+     * an invalid format throws the same exception
+     */
+    private final boolean mUseFormatter;
+
+    private MessageTemplate(@NonNull String format) {
+        mFormat = format;
+        List<String> literals = new ArrayList<>();
+        List<String> specifiers = new ArrayList<>();
+        boolean useFormatter = false;
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        int length = format.length();
+        while (i < length) {
+            char c = format.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            int end = specifierEnd(format, i + 1);
+            if (end < 0) {
+                useFormatter = true;
+                break;
+            }
+            String specifier = format.substring(i, end);
+            i = end;
+            if (specifier.equals("%%")) {
+                literal.append('%');
+            } else if (specifier.equals("%n")) {
+                literal.append(System.getProperty("line.separator"));
+            } else if (specifier.indexOf('$') >= 0 || specifier.indexOf('<') >= 0 || !isConversion(specifier)) {
+                useFormatter = true;
+                break;
+            } else {
+                if (literal.length() > 0) {
+                    literals.add(literal.toString());
+                    specifiers.add(null);
+                    literal.setLength(0);
+                }
+                literals.add(null);
+                specifiers.add(specifier);
+            }
+        }
+        if (literal.length() > 0) {
+            literals.add(literal.toString());
+            specifiers.add(null);
+        }
+        mUseFormatter = useFormatter;
+        int count = literals.size();
+        mLiterals = literals.toArray(new String[count]);
+        mSpecifiers = specifiers.toArray(new String[count]);
+        mConversions = new char[count];
+        mPrecisions = new int[count];
+        for (int j = 0; j < count; j++) {
+            String specifier = mSpecifiers[j];
+            if (specifier == null) continue;
+            mPrecisions[j] = -1;
+            if (specifier.equals("%s")) {
+                mConversions[j] = STRING;
+            } else if (specifier.equals("%d")) {
+                mConversions[j] = DECIMAL;
+            } else if (specifier.equals("%f")) {
+                mConversions[j] = FLOAT;
+                mPrecisions[j] = 6;
+            } else if (specifier.length() == 4 && specifier.charAt(1) == '.'
+                    && Character.isDigit(specifier.charAt(2)) && specifier.charAt(3) == 'f') {
+                mConversions[j] = FLOAT;
+                mPrecisions[j] = specifier.charAt(2) - '0';
+            } else {
+                char last = specifier.charAt(specifier.length() - 1);
+                mConversions[j] = last == '%' || last == 'n' ? NO_ARG : OTHER;
+            }
+        }
+    }
+
+    /**
+     * @return the template of the format string, compiled on first use
+     */
+    @NonNull
+    public static MessageTemplate compile(@NonNull String format) {
+        int slot = System.identityHashCode(format) & (CACHE_SIZE - 1);
+        MessageTemplate template = sCache[slot];
+        if (template == null || template.mFormat != format) {
+            // a racing thread may compile it too, the templates are immutable
+            template = new MessageTemplate(format);
+            sCache[slot] = template;
+        }
+        return template;
+    }
+
+    /**
+     * The same as {@link String#format(String, Object...)}
+     */
+    @NonNull
+    public static String format(@NonNull String format, @Nullable Object... args) {
+        return compile(format).format(args);
+    }
+
+    @NonNull
+    public String format(@Nullable Object... args) {
+        Renderer renderer = sRenderer.get();
+        // an arg whose toString() logs comes back here on the same thread
+        if (mUseFormatter || renderer.mBusy) return String.format(mFormat, args);
+        renderer.mBusy = true;
+        try {
+            StringBuilder sb = renderer.begin();
+            int index = 0;
+            for (int i = 0; i < mLiterals.length; i++) {
+                String literal = mLiterals[i];
+                if (literal != null) {
+                    sb.append(literal);
+                    continue;
+                }
+                if (mConversions[i] == NO_ARG) {
+                    renderer.formatter().format(mSpecifiers[i]);
+                    continue;
+                }
+                // like Formatter, a null array formats every specifier as null
+                if (args != null && index >= args.length) {
+                    throw new MissingFormatArgumentException(mSpecifiers[i]);
+                }
+                Object arg = args == null ? null : args[index++];
+                if (!renderFast(renderer, sb, mConversions[i], mPrecisions[i], arg)) {
+                    renderer.formatter().format(mSpecifiers[i], arg);
+                }
+            }
+            return sb.toString();
+        } finally {
+            renderer.mBusy = false;
+        }
+    }
+
+    private static boolean renderFast(@NonNull Renderer renderer, @NonNull StringBuilder sb,
+                                      char conversion, int precision, @Nullable Object arg) {
+        switch (conversion) {
+            case STRING:
+                if (arg instanceof Formattable) return false;
+                sb.append(arg);
+                return true;
+            case DECIMAL:
+                if (!renderer.isPlainLocale()) return false;
+                if (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte) {
+                    sb.append(((Number) arg).longValue());
+                    return true;
+                }
+                return false;
+            case FLOAT:
+                if (!renderer.isPlainLocale()) return false;
+                if (!(arg instanceof Double || arg instanceof Float)) return false;
+                double value = ((Number) arg).doubleValue();
+                if (Double.isNaN(value) || Double.isInfinite(value)) return false;
+                // keeps the sign of -0.0 and of negative values which round to zero
+                if (value < 0 || (value == 0 && 1 / value < 0)) sb.append('-');
+                // Formatter rounds the shortest decimal form of the double half up, widening a float first
+                sb.append(new BigDecimal(Double.toString(Math.abs(value)))
+                        .setScale(precision, RoundingMode.HALF_UP).toPlainString());
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isConversion(@NonNull String specifier) {
+        char last = specifier.charAt(specifier.length() - 1);
+        char previous = specifier.charAt(specifier.length() - 2);
+        return previous == 't' || previous == 'T' || "bBhHsScCdoxXeEfgGaA%n".indexOf(last) >= 0;
+    }
+
+    /**
+     * @return the index after the conversion of the specifier starting at from, -1 if there is none
+     */
+    private static int specifierEnd(@NonNull String format, int from) {
+        for (int i = from; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (Character.isLetter(c) || c == '%') {
+                if (c == 't' || c == 'T') {
+                    return i + 1 < format.length() ? i + 2 : -1;
+                }
+                return i + 1;
+            }
+            if ("-#+ 0,(<$.".indexOf(c) < 0 && !Character.isDigit(c)) return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * The builder and the formatter reused by a thread
+     */
+    private static final class Renderer {
+
+        private final StringBuilder mBuilder = new StringBuilder(128);
+        private Formatter mFormatter;
+        private Locale mLocale;
+        private boolean mPlainLocale;
+        boolean mBusy;
+
+        @NonNull
+        StringBuilder begin() {
+            mBuilder.setLength(0);
+            if (mBuilder.capacity() > 8 * 1024) mBuilder.trimToSize();
+            Locale locale = Locale.getDefault();
+            if (locale != mLocale) {
+                mLocale = locale;
+                mFormatter = null;
+                DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+                mPlainLocale = symbols.getZeroDigit() == '0' && symbols.getDecimalSeparator() == '.'
+                        && symbols.getMinusSign() == '-';
+            }
+            return mBuilder;
+        }
+
+        /**
+         * @return the digits, the decimal separator and the minus sign of the locale are the ASCII ones
+         */
+        boolean isPlainLocale() {
+            return mPlainLocale;
+        }
+
+        @NonNull
+        Formatter formatter() {
+            if (mFormatter == null) mFormatter = new Formatter(mBuilder, mLocale);
+            return mFormatter;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.erlei.logger.format;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * SLF4J style formatting, each {@code {}} is replaced by the next arg, {@code \{}} is a literal {@code {}}
+ * and {@code \\{}} is a backslash followed by the arg. Placeholders without an arg are kept as they are.
+ * <p>
+ * The format is scanned once, no regex and no {@link java.util.Formatter}, into a builder reused by the thread.
+ * A Throwable passed as the last arg without a placeholder for it is printed as the throwable of the line:
+ * <pre>
+ * Logger.e("upload {} failed", file, exception);
+ * </pre>
+ * Select it with {@code LoggerFactory.messageFormatter(new PlaceholderMessageFormatter())}.
+ */
+public class PlaceholderMessageFormatter implements MessageFormatter {
+
+    private static final char ESCAPE = '\\';
+
+    private final ThreadLocal<StringBuilder> mBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(128);
+        }
+    };
+
+    @NonNull
+    @Override
+    public String format(@NonNull String format, @NonNull Object... args) {
+        StringBuilder sb = mBuilder.get();
+        // an arg whose toString() logs comes back here on the same thread and gets its own builder
+        mBuilder.set(null);
+        if (sb == null) sb = new StringBuilder(format.length() + 32);
+        try {
+            sb.setLength(0);
+            render(sb, format, args);
+            return sb.toString();
+        } finally {
+            if (sb.capacity() <= 8 * 1024) mBuilder.set(sb);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Throwable getThrowable(@NonNull String format, @NonNull Object... args) {
+        if (args.length == 0 || !(args[args.length - 1] instanceof Throwable)) return null;
+        return countPlaceholders(format) < args.length ? (Throwable) args[args.length - 1] : null;
+    }
+
+    private static void render(@NonNull StringBuilder sb, @NonNull String format, @NonNull Object[] args) {
+        int length = format.length();
+        int start = 0;
+        int arg = 0;
+        for (int i = format.indexOf('{'); i >= 0 && arg < args.length; i = format.indexOf('{', i + 1)) {
+            if (i + 1 >= length || format.charAt(i + 1) != '}') continue;
+            if (isEscaped(format, i)) {
+                if (isEscaped(format, i - 1)) {
+                    // \\{} , a backslash and the arg
+                    sb.append(format, start, i - 1);
+                    appendArg(sb, args[arg++]);
+                } else {
+                    // \{} , a literal {}
+                    sb.append(format, start, i - 1).append("{}");
+                }
+            } else {
+                sb.append(format, start, i);
+                appendArg(sb, args[arg++]);
+            }
+            start = i + 2;
+            i++;
+        }
+        sb.append(format, start, length);
+    }
+
+    private static int countPlaceholders(@NonNull String format) {
+        int count = 0;
+        for (int i = format.indexOf("{}"); i >= 0; i = format.indexOf("{}", i + 2)) {
+            if (!isEscaped(format, i) || isEscaped(format, i - 1)) count++;
+        }
+        return count;
+    }
+
+    private static boolean isEscaped(@NonNull String format, int index) {
+        return index > 0 && format.charAt(index - 1) == ESCAPE;
+    }
+
+    private static void appendArg(@NonNull StringBuilder sb, @Nullable Object arg) {
+        if (arg == null || !arg.getClass().isArray()) {
+            sb.append(arg);
+        } else if (arg instanceof Object[]) {
+            sb.append(Arrays.deepToString((Object[]) arg));
+        } else if (arg instanceof int[]) {
+            sb.append(Arrays.toString((int[]) arg));
+        } else if (arg instanceof long[]) {
+            sb.append(Arrays.toString((long[]) arg));
+        } else if (arg instanceof byte[]) {
+            sb.append(Arrays.toString((byte[]) arg));
+        } else if (arg instanceof short[]) {
+            sb.append(Arrays.toString((short[]) arg));
+        } else if (arg instanceof char[]) {
+            sb.append(Arrays.toString((char[]) arg));
+        } else if (arg instanceof float[]) {
+            sb.append(Arrays.toString((float[]) arg));
+        } else if (arg instanceof double[]) {
+            sb.append(Arrays.toString((double[]) arg));
+        } else {
+            sb.append(Arrays.toString((boolean[]) arg));
+        }
+    }
+}
@@ -89,10 +89,21 @@ public class PrettyFormatStrategy implements FormatStrategy {
         return new Builder();
     }
 
+    /**
+     * Synchronized so that the borders of concurrent logs are not interleaved.
+     * Only strings reach the print strategy, the line is recycled here.
+     */
     @Override
-    public void log(@NonNull LogLine logLine) {
+    public synchronized void log(@NonNull LogLine logLine) {
         Objects.requireNonNull(logLine);
+        try {
+            print(logLine);
+        } finally {
+            logLine.recycle();
+        }
+    }
 
+    private void print(@NonNull LogLine logLine) {
         logLine.setModuleName(tag);
         String tag = logLine.getFulTag();
 
@@ -121,6 +132,16 @@ public class PrettyFormatStrategy implements FormatStrategy {
         logBottomBorder(logLine.getLevel(), tag);
     }
 
+    @Override
+    public void flush() {
+        mPrintStrategy.flush();
+    }
+
+    @Override
+    public void close() {
+        mPrintStrategy.close();
+    }
+
     private void logTopBorder(int logType, @Nullable String tag) {
         logChunk(logType, tag, TOP_BORDER);
     }
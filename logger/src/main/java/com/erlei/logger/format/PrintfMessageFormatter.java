@@ -0,0 +1,15 @@
+package com.erlei.logger.format;
+
+import android.support.annotation.NonNull;
+
+/**
+ * {@link java.util.Formatter} syntax, the default, rendered by {@link MessageTemplate}
+ */
+public class PrintfMessageFormatter implements MessageFormatter {
+
+    @NonNull
+    @Override
+    public String format(@NonNull String format, @NonNull Object... args) {
+        return MessageTemplate.format(format, args);
+    }
+}
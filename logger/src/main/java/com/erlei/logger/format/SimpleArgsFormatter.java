@@ -40,14 +40,12 @@ public class SimpleArgsFormatter implements ArgsFormatter {
         return sFormatter;
     }
 
-    private final StringBuilder sb = new StringBuilder(50);
-
 
     @NonNull
     @Override
     public String format(@Nullable Object... args) {
         if (args == null || args.length <= 0) return "Empty/NULL args message";
-        sb.delete(0, sb.length());
+        StringBuilder sb = new StringBuilder(50);
         for (int i = 0; i < args.length; i++) {
             sb.append(convert(args[i]));
             if (separator != null && i < args.length - 1) sb.append(separator);
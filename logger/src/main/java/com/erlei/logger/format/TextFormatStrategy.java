@@ -7,7 +7,9 @@ import com.erlei.logger.printer.DiskPrintStrategy;
 import com.erlei.logger.printer.PrintStrategy;
 
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 
@@ -21,11 +23,25 @@ public class TextFormatStrategy implements FormatStrategy {
 
     private static final String NEW_LINE = System.getProperty("line.separator");
     private static final String SEPARATOR = ",";
+    private static final ThreadLocal<StringBuilder> sBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
     private final Builder builder;
-    private StringBuffer sb = new StringBuffer(32);
+    @NonNull
+    private final Object formatKey;
+    @NonNull
+    private final TimestampFormatter timestamp;
 
     public TextFormatStrategy(Builder builder) {
         this.builder = builder;
+        // SimpleDateFormat.equals() depends on the last date it formatted, its settings are compared instead
+        this.formatKey = Arrays.asList(TextFormatStrategy.class, builder.date, builder.dateFormat.toPattern(),
+                builder.dateFormat.getDateFormatSymbols(), builder.dateFormat.getTimeZone().getID(),
+                builder.separator, builder.tag);
+        this.timestamp = new TimestampFormatter(builder.dateFormat);
     }
 
     public static Builder newBuilder() {
@@ -35,12 +51,65 @@ public class TextFormatStrategy implements FormatStrategy {
 
     @Override
     public void log(@NonNull LogLine logLine) {
+        try {
+            format(logLine);
+        } catch (RuntimeException e) {
+            logLine.recycle();
+            throw e;
+        }
+        builder.mPrintStrategy.print(logLine);
+    }
+
+    @Override
+    public void log(@NonNull List<LogLine> logLines) {
+        try {
+            for (LogLine logLine : logLines) {
+                format(logLine);
+            }
+        } catch (RuntimeException e) {
+            LogLine.recycleAll(logLines, 0);
+            throw e;
+        }
+        builder.mPrintStrategy.print(logLines);
+    }
+
+    @NonNull
+    @Override
+    public Object getFormatKey() {
+        return formatKey;
+    }
+
+    @Override
+    public void flush() {
+        builder.mPrintStrategy.flush();
+    }
+
+    @Override
+    public void close() {
+        builder.mPrintStrategy.close();
+    }
+
+    private void format(@NonNull LogLine logLine) {
         Objects.requireNonNull(logLine);
         logLine.setModuleName(builder.tag);
         if (builder.date != null) logLine.setTime(builder.date.getTime());
-        sb.delete(0, sb.length());
+        if (logLine.useFormatted(formatKey)) return;
+        logLine.setFormatted(formatKey, render(logLine));
+    }
+
+    /**
+     * Renders into the builder of the calling thread, no lock is taken. The line encodes the chars
+     * to UTF-8 before the builder is reused, no String is made for the line.
+     */
+    @NonNull
+    private StringBuilder render(@NonNull LogLine logLine) {
+        // an arg whose toString() logs renders on this thread too, the message is made before the builder is taken
+        String message = logLine.getMessage();
+        StringBuilder sb = sBuilder.get();
+        sb.setLength(0);
+        if (sb.capacity() > 8 * 1024) sb.trimToSize();
         //date
-        sb.append(builder.dateFormat.format(logLine.getTime()));
+        timestamp.format(logLine.getTime(), sb);
         sb.append(builder.separator);
         //level
         sb.append(logLine.getLevelString());
@@ -50,11 +119,10 @@ public class TextFormatStrategy implements FormatStrategy {
         sb.append(logLine.getFulTag());
 
         sb.append(builder.separator);
-        sb.append(logLine.getMessage());
+        sb.append(message);
 
         sb.append(NEW_LINE);
-        logLine.setMessage(sb.toString());
-        builder.mPrintStrategy.print(logLine);
+        return sb;
     }
 
 
@@ -69,6 +137,9 @@ public class TextFormatStrategy implements FormatStrategy {
         public Builder() {
         }
 
+        /**
+         * @param val a fixed time for every line, the time of the line by default
+         */
         @NonNull
         public Builder date(@Nullable Date val) {
             date = val;
@@ -83,7 +154,7 @@ public class TextFormatStrategy implements FormatStrategy {
 
         @NonNull
         public Builder separator(@Nullable String val) {
-            separator = separator;
+            separator = val;
             return this;
         }
 
@@ -101,9 +172,6 @@ public class TextFormatStrategy implements FormatStrategy {
 
         @NonNull
         public TextFormatStrategy build() {
-            if (date == null) {
-                date = new Date();
-            }
             if (dateFormat == null) {
                 dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.getDefault());
             }
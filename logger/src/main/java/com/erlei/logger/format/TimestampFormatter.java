@@ -0,0 +1,164 @@
+package com.erlei.logger.format;
+
+import android.support.annotation.NonNull;
+
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Describe : 缓存到秒的时间格式化, 代替每行调用 {@link SimpleDateFormat#format(Date)}
+ * <p>
+ * The pattern is compiled once, the milliseconds field {@code S} is replaced by a marker. The text
+ * before and after the marker is formatted once per second and cached, the lines of the same
+ * second only append the milliseconds digits. The output is the same as the {@link SimpleDateFormat}.
+ * <p>
+ * The cached second is an immutable entry in a volatile field, a thread which misses it formats
+ * the new second with a {@link SimpleDateFormat} of its own and replaces the entry, no lock is taken.
+ */
+public final class TimestampFormatter {
+
+    private static final char MARKER = '\uFFFF';
+
+    @NonNull
+    private final ThreadLocal<SimpleDateFormat> mDateFormat;
+    /**
+     * The digits of the milliseconds field, 0 if the pattern has none, -1 if the milliseconds are
+     * not patched and every entry holds a single millisecond
+     */
+    private final int mMillisDigits;
+    private volatile Second mSecond;
+
+    public TimestampFormatter(@NonNull SimpleDateFormat dateFormat) {
+        String pattern = dateFormat.toPattern();
+        int digits = millisDigits(pattern);
+        NumberFormat numberFormat = dateFormat.getNumberFormat();
+        boolean asciiDigits = numberFormat instanceof DecimalFormat
+                && ((DecimalFormat) numberFormat).getDecimalFormatSymbols().getZeroDigit() == '0';
+        final SimpleDateFormat format = (SimpleDateFormat) dateFormat.clone();
+        if (digits > 0 && asciiDigits) {
+            format.applyPattern(replaceMillis(pattern));
+            mMillisDigits = digits;
+        } else {
+            // the milliseconds appear more than once, or in digits of another script
+            mMillisDigits = digits == 0 ? 0 : -1;
+        }
+        mDateFormat = new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return (SimpleDateFormat) format.clone();
+            }
+        };
+    }
+
+    /**
+     * Appends the formatted time
+     */
+    public void format(long time, @NonNull StringBuilder sb) {
+        long second = time;
+        int millis = 0;
+        if (mMillisDigits >= 0) {
+            second = time / 1000;
+            millis = (int) (time % 1000);
+            if (millis < 0) {
+                second--;
+                millis += 1000;
+            }
+        }
+        Second cached = mSecond;
+        if (cached == null || cached.mSecond != second) {
+            cached = formatSecond(second);
+            mSecond = cached;
+        }
+        sb.append(cached.mBefore);
+        if (cached.mAfter == null) return;
+        appendMillis(millis, sb);
+        sb.append(cached.mAfter);
+    }
+
+    /**
+     * Zero padded to the field length like {@link SimpleDateFormat}, the digits are appended one by one,
+     * no String is made for them
+     */
+    private void appendMillis(int millis, @NonNull StringBuilder sb) {
+        int length = millis >= 100 ? 3 : millis >= 10 ? 2 : 1;
+        for (int i = length; i < mMillisDigits; i++) {
+            sb.append('0');
+        }
+        if (length == 3) sb.append((char) ('0' + millis / 100));
+        if (length >= 2) sb.append((char) ('0' + millis / 10 % 10));
+        sb.append((char) ('0' + millis % 10));
+    }
+
+    @NonNull
+    public String format(long time) {
+        StringBuilder sb = new StringBuilder(32);
+        format(time, sb);
+        return sb.toString();
+    }
+
+    @NonNull
+    private Second formatSecond(long second) {
+        long time = mMillisDigits < 0 ? second : second * 1000;
+        String text = mDateFormat.get().format(new Date(time));
+        int marker = mMillisDigits > 0 ? text.indexOf(MARKER) : -1;
+        if (marker < 0) return new Second(second, text, null);
+        return new Second(second, text.substring(0, marker), text.substring(marker + 1));
+    }
+
+    /**
+     * @return the length of the only milliseconds field, 0 if there is none, -1 if there are several
+     */
+    private static int millisDigits(@NonNull String pattern) {
+        int digits = 0;
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == 'S') {
+                if (digits > 0) return -1;
+                int end = i;
+                while (end < pattern.length() && pattern.charAt(end) == 'S') end++;
+                digits = end - i;
+                i = end - 1;
+            }
+        }
+        return digits;
+    }
+
+    @NonNull
+    private static String replaceMillis(@NonNull String pattern) {
+        StringBuilder sb = new StringBuilder(pattern.length());
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == 'S') {
+                while (i + 1 < pattern.length() && pattern.charAt(i + 1) == 'S') i++;
+                // not a pattern letter, it needs no quotes
+                sb.append(MARKER);
+                continue;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static final class Second {
+        final long mSecond;
+        final String mBefore;
+        /**
+         * The text after the milliseconds, null if they are not patched
+         */
+        final String mAfter;
+
+        Second(long second, String before, String after) {
+            mSecond = second;
+            mBefore = before;
+            mAfter = after;
+        }
+    }
+}
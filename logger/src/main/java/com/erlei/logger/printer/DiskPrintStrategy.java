@@ -5,8 +5,10 @@ import android.support.annotation.Nullable;
 import com.erlei.logger.LogFileManager;
 import com.erlei.logger.LogLine;
 import com.erlei.logger.LogWriterFactory;
+import com.erlei.logger.writer.CipherLogWriter;
 import com.erlei.logger.writer.FileLogWriter;
 import com.erlei.logger.writer.LogWriter;
+import com.erlei.logger.writer.MappedLogWriter;
 import com.erlei.logger.writer.MMAPLogWriter;
 
 import java.io.File;
@@ -14,6 +16,8 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
+import javax.crypto.SecretKey;
+
 /**
  * Abstract class that takes care of background threading the file log operation on Android.
  * implementing classes are free to directly perform I/O operations there.
@@ -23,6 +27,10 @@ public class DiskPrintStrategy implements PrintStrategy {
     private final Builder mBuilder;
     private File mFile = null;
     private LogWriter mWriter;
+    /**
+     * Guarded by this
+     */
+    private boolean mClosed;
 
     private DiskPrintStrategy(Builder builder) {
         mBuilder = builder;
@@ -35,34 +43,92 @@ public class DiskPrintStrategy implements PrintStrategy {
 
     @Override
     public void print(@NonNull LogLine logLine) {
-        LogWriter writer = getWriter();
+        // writing must not race with the rotation in getWriter() closing the current writer
+        try {
+            synchronized (this) {
+                if (!mClosed) {
+                    LogWriter writer = getWriter();
+                    if (writer != null) {
+                        try {
+                            writer.write(logLine);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+        } finally {
+            logLine.recycle();
+        }
+    }
+
+    /**
+     * The rotation check, the writer lock and the write happen once for the whole batch,
+     * so a file may grow beyond maxLength by at most one batch
+     */
+    @Override
+    public void print(@NonNull List<LogLine> logLines) {
+        if (logLines.isEmpty()) return;
         try {
-            writer.write(logLine);
+            synchronized (this) {
+                if (!mClosed) {
+                    LogWriter writer = getWriter();
+                    if (writer != null) {
+                        try {
+                            writer.write(logLines);
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }
+        } finally {
+            LogLine.recycleAll(logLines, 0);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (mWriter == null) return;
+        try {
+            mWriter.flush();
         } catch (IOException e) {
             e.printStackTrace();
         }
-        logLine.recycle();
     }
 
-    @NonNull
-    protected synchronized LogWriter getWriter() {
-        if (mWriter == null || mWriter.getWrittenBytes() >= mBuilder.maxLength) {
+    /**
+     * Closes the current file, lines printed afterwards are recycled without being written.
+     * The provider may return the same file again, which the file listeners already finished,
+     * e.g. with the trailer of a JSON file.
+     */
+    @Override
+    public synchronized void close() {
+        mClosed = true;
+        closeWriter();
+    }
 
-            if (mWriter != null) {
+    /**
+     * @return the writer of the current file, null if the factory could not open it
+     */
+    @Nullable
+    protected synchronized LogWriter getWriter() {
+        if (mWriter == null || mWriter.getWrittenBytes() >= mBuilder.maxLength
+                || (mBuilder.maxUncompressedLength > 0 && mWriter.getUncompressedBytes() >= mBuilder.maxUncompressedLength)) {
 
-                notifyFileListener(fileListener -> fileListener.beforeClose(mFile, mWriter));
-                try {
-                    mWriter.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                notifyFileListener(fileListener -> fileListener.afterClose(mFile));
-            }
+            closeWriter();
             File file = mBuilder.fileProvider.getLogFile(mBuilder.maxLength, mBuilder.suffix);
             if (!Objects.equals(file, mFile)) {
                 notifyFileListener(fileListener -> fileListener.beforeCreate(file));
             }
-            LogWriter writer = mBuilder.factory.create(file);
+            LogWriter writer;
+            try {
+                writer = mBuilder.factory.create(file);
+            } catch (IOException e) {
+                // e.g. the disk is full, the lines are dropped and the next print tries again
+                e.printStackTrace();
+                return null;
+            }
             if (!Objects.equals(file, mFile)) {
                 notifyFileListener(fileListener -> fileListener.afterCreate(file, writer));
             }
@@ -72,12 +138,47 @@ public class DiskPrintStrategy implements PrintStrategy {
         return mWriter;
     }
 
+    private void closeWriter() {
+        if (mWriter == null) return;
+        LogWriter writer = mWriter;
+        notifyFileListener(fileListener -> fileListener.beforeClose(mFile, writer));
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mWriter = null;
+        notifyFileListener(fileListener -> fileListener.afterClose(mFile));
+    }
+
     protected void notifyFileListener(Customer customer) {
         for (FileListener fileListener : mBuilder.mFileListeners) {
             customer.run(fileListener);
         }
     }
 
+    /**
+     * @return the factory used when none is set, {@link MMAPLogWriter} falling back to
+     * {@link MappedLogWriter} and then {@link FileLogWriter}
+     */
+    @NonNull
+    public static LogWriterFactory defaultWriterFactory() {
+        return file -> {
+            try {
+                return new MMAPLogWriter(file, 400);
+            } catch (IOException | LinkageError e) {
+                // the native library is not available on this ABI or in a plain JVM
+                e.printStackTrace();
+            }
+            try {
+                return new MappedLogWriter(file, 400);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return new FileLogWriter(file);
+        };
+    }
+
     private interface Customer {
 
         void run(FileListener fileListener);
@@ -89,7 +190,9 @@ public class DiskPrintStrategy implements PrintStrategy {
         private List<FileListener> mFileListeners = new ArrayList<>();
         private Map<String, String> header;
         private long maxLength = 1024 * 500;
+        private long maxUncompressedLength = 0;
         private LogFileProvider fileProvider;
+        private SecretKey encryptionKey;
 
         private Builder() {
         }
@@ -119,6 +222,24 @@ public class DiskPrintStrategy implements PrintStrategy {
             return this;
         }
 
+        /**
+         * @param maxUncompressedLength also rotate when a compressing writer such as
+         *                              {@link com.erlei.logger.writer.DeflateLogWriter} has taken this
+         *                              many bytes before compression, 0 to rotate on maxLength only
+         */
+        public Builder maxUncompressedLength(long maxUncompressedLength) {
+            this.maxUncompressedLength = maxUncompressedLength;
+            return this;
+        }
+
+        /**
+         * @param encryptionKey compress and encrypt the logs with this AES key, see {@link CipherLogWriter}
+         */
+        public Builder encryptionKey(@Nullable SecretKey encryptionKey) {
+            this.encryptionKey = encryptionKey;
+            return this;
+        }
+
         public Builder fileProvider(@Nullable LogFileProvider fileProvider) {
             this.fileProvider = fileProvider;
             return this;
@@ -127,13 +248,11 @@ public class DiskPrintStrategy implements PrintStrategy {
 
         public DiskPrintStrategy build() {
             if (factory == null) {
-                factory = file -> {
-                    try {
-                        return new MMAPLogWriter(file, 400);
-                    } catch (IOException e) {
-                        return new FileLogWriter(file);
-                    }
-                };
+                factory = defaultWriterFactory();
+            }
+
+            if (encryptionKey != null) {
+                factory = CipherLogWriter.factory(factory, encryptionKey);
             }
 
             if (header != null && !header.isEmpty()) {
@@ -17,7 +17,10 @@ public class LogcatPrintStrategy implements PrintStrategy {
     @Override
     public void print(@NonNull LogLine logLine) {
         Objects.requireNonNull(logLine);
-        Log.println(logLine.getLevel(), logLine.getFulTag(), logLine.getMessage());
-        logLine.recycle();
+        try {
+            Log.println(logLine.getLevel(), logLine.getFulTag(), logLine.getMessage());
+        } finally {
+            logLine.recycle();
+        }
     }
 }
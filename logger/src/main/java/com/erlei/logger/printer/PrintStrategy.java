@@ -3,6 +3,8 @@ package com.erlei.logger.printer;
 import android.support.annotation.NonNull;
 import com.erlei.logger.LogLine;
 
+import java.util.List;
+
 /**
  * Determines print target for the logs such as Disk, Logcat etc.
  *
@@ -18,4 +20,32 @@ public interface PrintStrategy {
      * @param logLine log info
      */
     void print(@NonNull LogLine logLine);
+
+    /**
+     * Prints a batch of formatted lines, the lines are recycled like in {@link #print(LogLine)}
+     *
+     * @param logLines log infos, the list is reused by the caller after this method returns
+     */
+    default void print(@NonNull List<LogLine> logLines) {
+        for (int i = 0; i < logLines.size(); i++) {
+            try {
+                print(logLines.get(i));
+            } catch (RuntimeException e) {
+                LogLine.recycleAll(logLines, i + 1);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Flushes the printed logs to their destination, e.g. the current log file
+     */
+    default void flush() {
+    }
+
+    /**
+     * Flushes and releases the destination, the strategy decides what happens to lines printed afterwards
+     */
+    default void close() {
+    }
 }
@@ -0,0 +1,354 @@
+package com.erlei.logger.reader;
+
+import android.support.annotation.NonNull;
+
+import com.erlei.logger.writer.BinaryLogWriter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
+
+import static com.erlei.logger.reader.Bytes.indexOf;
+import static com.erlei.logger.reader.Bytes.readFully;
+import static com.erlei.logger.writer.BinaryLogWriter.SESSION_MAGIC;
+
+/**
+ * Describe : 把 {@link BinaryLogWriter} 写入的日志转换成文本或 json
+ * <p>
+ * The text has the columns of {@link com.erlei.logger.format.TextFormatStrategy}, the json has the fields of
+ * {@link com.erlei.logger.format.JsonFormatStrategy.DefaultObjectSerializer}, one object per line.
+ * A record cut by a crash ends the session, the decoder skips to the next session magic.
+ */
+public final class BinaryLogDecoder {
+
+    private static final String SEPARATOR = ",";
+
+    private BinaryLogDecoder() {
+    }
+
+    /**
+     * @return the number of decoded lines
+     */
+    public static long decode(@NonNull InputStream input, @NonNull OutputStream output, boolean json) throws IOException {
+        byte[] data = readFully(input);
+        Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", Locale.getDefault());
+        StringBuilder sb = new StringBuilder(128);
+        List<String> strings = new ArrayList<>();
+        long lines = 0;
+        long time = 0;
+        boolean inSession = false;
+        int[] position = {0};
+        int nextSession = -1;
+        while (position[0] < data.length) {
+            int start = position[0];
+            if (nextSession < start) nextSession = nextSession(data, start);
+            try {
+                int length = (int) readVarint(data, position, data.length);
+                int end = position[0] + length;
+                // a record cut by a crash would run into the session written after it
+                if (length < 1 || end > data.length || (start < nextSession && end > nextSession)) {
+                    throw new IndexOutOfBoundsException();
+                }
+                byte type = data[position[0]++];
+                if (type == BinaryLogWriter.TYPE_SESSION) {
+                    if (!Arrays.equals(Arrays.copyOfRange(data, position[0], end), SESSION_MAGIC)) {
+                        throw new IndexOutOfBoundsException();
+                    }
+                    inSession = true;
+                    strings.clear();
+                    time = 0;
+                } else if (!inSession) {
+                    throw new IndexOutOfBoundsException();
+                } else if (type == BinaryLogWriter.TYPE_STRING) {
+                    int id = (int) readVarint(data, position, end);
+                    String string = new String(data, position[0], end - position[0], StandardCharsets.UTF_8);
+                    while (strings.size() < id) strings.add("");
+                    strings.set(id - 1, string);
+                } else if (type == BinaryLogWriter.TYPE_LINE || type == BinaryLogWriter.TYPE_CONSTANT
+                        || type == BinaryLogWriter.TYPE_TEMPLATE) {
+                    int level = (int) readVarint(data, position, end);
+                    long delta = readVarint(data, position, end);
+                    time += unzigzag(delta);
+                    String module = string(strings, readVarint(data, position, end));
+                    String tag = string(strings, readVarint(data, position, end));
+                    int extraCount = (int) readVarint(data, position, end);
+                    if (extraCount < 0 || extraCount > end - position[0]) throw new IndexOutOfBoundsException();
+                    String[] extra = new String[extraCount * 2];
+                    for (int i = 0; i < extra.length; i += 2) {
+                        extra[i] = string(strings, readVarint(data, position, end));
+                        int valueLength = (int) readVarint(data, position, end);
+                        if (valueLength < 0 || position[0] + valueLength > end) throw new IndexOutOfBoundsException();
+                        extra[i + 1] = new String(data, position[0], valueLength, StandardCharsets.UTF_8);
+                        position[0] += valueLength;
+                    }
+                    String message;
+                    if (type == BinaryLogWriter.TYPE_TEMPLATE) {
+                        String format = string(strings, readVarint(data, position, end));
+                        message = format(format, readArgs(data, position, end));
+                    } else if (type == BinaryLogWriter.TYPE_CONSTANT) {
+                        message = string(strings, readVarint(data, position, end));
+                    } else {
+                        message = new String(data, position[0], end - position[0], StandardCharsets.UTF_8);
+                    }
+                    tag = fulTag(module, tag);
+                    sb.setLength(0);
+                    if (json) {
+                        appendJson(sb, level, time, tag, extra, message);
+                    } else {
+                        appendText(sb, dateFormat, level, time, tag, extra, message);
+                    }
+                    writer.append(sb);
+                    lines++;
+                } else if (type == BinaryLogWriter.TYPE_RAW) {
+                    if (!json) writer.write(new String(data, position[0], end - position[0], StandardCharsets.UTF_8));
+                }
+                position[0] = end;
+            } catch (IndexOutOfBoundsException e) {
+                // truncated or corrupt, the tag ids of this session are lost
+                inSession = false;
+                int next = nextSession(data, start + 1);
+                if (next == Integer.MAX_VALUE) break;
+                position[0] = next;
+            }
+        }
+        writer.flush();
+        return lines;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean json = args.length == 2 && "--json".equals(args[0]);
+        if (args.length != 1 && !json) {
+            System.err.println("usage: BinaryLogDecoder [--json] <file>");
+            return;
+        }
+        try (InputStream input = new FileInputStream(args[args.length - 1])) {
+            decode(input, System.out, json);
+        }
+        System.out.flush();
+    }
+
+    /**
+     * The same as LogLine, with the default locale of the machine running the decoder
+     */
+    @NonNull
+    private static String format(@NonNull String format, @NonNull Object[] args) {
+        try {
+            return String.format(format, args);
+        } catch (IllegalFormatException e) {
+            // an arg stored as a string does not fit its conversion
+            return format + " " + Arrays.toString(args);
+        }
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if the args run past the end
+     */
+    @NonNull
+    private static Object[] readArgs(@NonNull byte[] data, @NonNull int[] position, int end) {
+        int count = (int) readVarint(data, position, end);
+        if (count < 0 || count > end - position[0]) throw new IndexOutOfBoundsException();
+        Object[] args = new Object[count];
+        for (int i = 0; i < count; i++) {
+            if (position[0] >= end) throw new IndexOutOfBoundsException();
+            byte type = data[position[0]++];
+            switch (type) {
+                case BinaryLogWriter.ARG_NULL:
+                    break;
+                case BinaryLogWriter.ARG_FALSE:
+                    args[i] = false;
+                    break;
+                case BinaryLogWriter.ARG_TRUE:
+                    args[i] = true;
+                    break;
+                case BinaryLogWriter.ARG_BYTE:
+                    args[i] = (byte) unzigzag(readVarint(data, position, end));
+                    break;
+                case BinaryLogWriter.ARG_SHORT:
+                    args[i] = (short) unzigzag(readVarint(data, position, end));
+                    break;
+                case BinaryLogWriter.ARG_INT:
+                    args[i] = (int) unzigzag(readVarint(data, position, end));
+                    break;
+                case BinaryLogWriter.ARG_LONG:
+                    args[i] = unzigzag(readVarint(data, position, end));
+                    break;
+                case BinaryLogWriter.ARG_FLOAT:
+                    args[i] = Float.intBitsToFloat((int) readFixed(data, position, end, 4));
+                    break;
+                case BinaryLogWriter.ARG_DOUBLE:
+                    args[i] = Double.longBitsToDouble(readFixed(data, position, end, 8));
+                    break;
+                case BinaryLogWriter.ARG_CHAR:
+                    args[i] = (char) readVarint(data, position, end);
+                    break;
+                case BinaryLogWriter.ARG_STRING:
+                    int length = (int) readVarint(data, position, end);
+                    if (length < 0 || position[0] + length > end) throw new IndexOutOfBoundsException();
+                    args[i] = new String(data, position[0], length, StandardCharsets.UTF_8);
+                    position[0] += length;
+                    break;
+                default:
+                    throw new IndexOutOfBoundsException();
+            }
+        }
+        return args;
+    }
+
+    private static long readFixed(@NonNull byte[] data, @NonNull int[] position, int end, int size) {
+        if (position[0] + size > end) throw new IndexOutOfBoundsException();
+        long value = 0;
+        for (int i = 0; i < size; i++) {
+            value = (value << 8) | (data[position[0]++] & 0xff);
+        }
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if the id has no entry
+     */
+    @NonNull
+    private static String string(@NonNull List<String> strings, long id) {
+        if (id == 0) return "";
+        if (id < 0 || id > strings.size()) throw new IndexOutOfBoundsException();
+        return strings.get((int) id - 1);
+    }
+
+    /**
+     * The same as {@link com.erlei.logger.LogLine#getFulTag()}
+     */
+    @NonNull
+    private static String fulTag(@NonNull String module, @NonNull String tag) {
+        if (module.isEmpty()) return tag;
+        if (tag.isEmpty()) return module;
+        // LogLine drops both when they are equal
+        return tag.equals(module) ? "" : module + "-" + tag;
+    }
+
+    private static void appendText(@NonNull StringBuilder sb, @NonNull SimpleDateFormat dateFormat, int level,
+                                   long time, @NonNull String tag, @NonNull String[] extra, @NonNull String message) {
+        sb.append(dateFormat.format(time)).append(SEPARATOR)
+                .append(levelString(level)).append(SEPARATOR)
+                .append(tag).append(SEPARATOR)
+                .append(message);
+        if (extra.length > 0) {
+            sb.append(SEPARATOR).append('{');
+            for (int i = 0; i < extra.length; i += 2) {
+                if (i > 0) sb.append(", ");
+                sb.append(extra[i]).append('=').append(extra[i + 1]);
+            }
+            sb.append('}');
+        }
+        sb.append('\n');
+    }
+
+    private static void appendJson(@NonNull StringBuilder sb, int level, long time, @NonNull String tag,
+                                   @NonNull String[] extra, @NonNull String message) {
+        sb.append("{\"level\":").append(level)
+                .append(",\"time\":").append(time)
+                .append(",\"tag\":");
+        appendQuoted(sb, tag);
+        if (extra.length > 0) {
+            sb.append(",\"extra\":{");
+            for (int i = 0; i < extra.length; i += 2) {
+                if (i > 0) sb.append(',');
+                appendQuoted(sb, extra[i]);
+                sb.append(':');
+                appendQuoted(sb, extra[i + 1]);
+            }
+            sb.append('}');
+        }
+        sb.append(",\"msg\":");
+        appendQuoted(sb, message);
+        sb.append("}\n");
+    }
+
+    private static void appendQuoted(@NonNull StringBuilder sb, @NonNull String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    sb.append('\\').append(c);
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format(Locale.US, "\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * The values of {@link android.util.Log}, which is not available on a plain JVM
+     */
+    @NonNull
+    private static String levelString(int level) {
+        switch (level) {
+            case 2:
+                return "VERBOSE";
+            case 3:
+                return "DEBUG";
+            case 4:
+                return "INFO";
+            case 5:
+                return "WARN";
+            case 6:
+                return "ERROR";
+            case 7:
+                return "ASSERT";
+            default:
+                return "UNKNOWN";
+        }
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if the varint runs past the end
+     */
+    private static long readVarint(@NonNull byte[] data, @NonNull int[] position, int end) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= end) throw new IndexOutOfBoundsException();
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IndexOutOfBoundsException();
+    }
+
+    /**
+     * @return the start of the first session record at or after from, {@link Integer#MAX_VALUE} if there is none
+     */
+    private static int nextSession(@NonNull byte[] data, int from) {
+        // varint(9) and the session type precede the magic
+        int index = indexOf(data, SESSION_MAGIC, from + 2);
+        return index < 0 ? Integer.MAX_VALUE : index - 2;
+    }
+}
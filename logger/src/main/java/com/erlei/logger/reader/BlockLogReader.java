@@ -0,0 +1,130 @@
+package com.erlei.logger.reader;
+
+import android.support.annotation.NonNull;
+
+import com.erlei.logger.writer.BlockLogWriter;
+import com.erlei.logger.writer.BlockLogWriter.Block;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Describe : 读取 {@link BlockLogWriter} 写入的日志
+ * <p>
+ * Only the blocks whose time span overlaps the requested range are read and inflated,
+ * a block is returned as a whole, so it may hold a few lines just outside the range.
+ */
+public class BlockLogReader implements Closeable {
+
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private final List<Block> mBlocks;
+    private final Inflater mInflater = new Inflater(true);
+    private final CRC32 mCrc = new CRC32();
+
+    public BlockLogReader(@NonNull File file) throws IOException {
+        mRandomAccessFile = new RandomAccessFile(file, "r");
+        mChannel = mRandomAccessFile.getChannel();
+        try {
+            mBlocks = Collections.unmodifiableList(BlockLogWriter.readIndex(mChannel));
+        } catch (IOException e) {
+            mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    @NonNull
+    public List<Block> getBlocks() {
+        return mBlocks;
+    }
+
+    /**
+     * @return the blocks which have lines between from and to, inclusive
+     */
+    @NonNull
+    public List<Block> getBlocks(long from, long to) {
+        List<Block> blocks = new ArrayList<>();
+        for (Block block : mBlocks) {
+            if (block.overlaps(from, to)) blocks.add(block);
+        }
+        return blocks;
+    }
+
+    /**
+     * Writes the blocks which have lines between from and to to the output
+     *
+     * @return the number of bytes written
+     */
+    public long read(long from, long to, @NonNull OutputStream output) throws IOException {
+        long count = 0;
+        for (Block block : getBlocks(from, to)) {
+            byte[] raw = read(block);
+            output.write(raw);
+            count += raw.length;
+        }
+        return count;
+    }
+
+    /**
+     * @return the raw bytes of the block
+     * @throws IOException if the block is corrupt
+     */
+    @NonNull
+    public byte[] read(@NonNull Block block) throws IOException {
+        ByteBuffer compressed = ByteBuffer.allocate(block.compressedLength);
+        while (compressed.hasRemaining()) {
+            if (mChannel.read(compressed, block.getDataOffset() + compressed.position()) < 0) {
+                throw new IOException("Unexpected end of file " + block);
+            }
+        }
+        byte[] raw = new byte[block.rawLength];
+        mInflater.reset();
+        mInflater.setInput(compressed.array());
+        try {
+            int count = 0;
+            while (count < raw.length && !mInflater.finished()) {
+                int inflated = mInflater.inflate(raw, count, raw.length - count);
+                if (inflated == 0 && mInflater.needsInput()) break;
+                count += inflated;
+            }
+            mCrc.reset();
+            mCrc.update(raw, 0, count);
+            if (count != raw.length || (int) mCrc.getValue() != block.crc) {
+                throw new IOException("Corrupt block " + block);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block " + block, e);
+        }
+        return raw;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInflater.end();
+        mRandomAccessFile.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 3) {
+            System.err.println("usage: BlockLogReader <file> [fromMillis toMillis]");
+            return;
+        }
+        long from = args.length == 3 ? Long.parseLong(args[1]) : Long.MIN_VALUE;
+        long to = args.length == 3 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+        try (BlockLogReader reader = new BlockLogReader(new File(args[0]))) {
+            reader.read(from, to, System.out);
+        }
+        System.out.flush();
+    }
+}
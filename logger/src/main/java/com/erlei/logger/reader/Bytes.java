@@ -0,0 +1,55 @@
+package com.erlei.logger.reader;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Describe : 读取日志文件的公共方法
+ * <p>
+ * The readers of this package only use these helpers and the constants of their writers, so each
+ * of them also runs on a plain JVM through its main(), e.g.
+ * {@code java -cp logger.jar com.erlei.logger.reader.DeflateLogReader log.z > log.txt}
+ */
+final class Bytes {
+
+    private Bytes() {
+    }
+
+    /**
+     * @return the big-endian int at offset
+     */
+    static int readInt(@NonNull byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24)
+                | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8)
+                | (data[offset + 3] & 0xff);
+    }
+
+    /**
+     * @return the first index of pattern at or after from, -1 if there is none
+     */
+    static int indexOf(@NonNull byte[] data, @NonNull byte[] pattern, int from) {
+        outer:
+        for (int i = Math.max(from, 0); i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    @NonNull
+    static byte[] readFully(@NonNull InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        int count;
+        while ((count = input.read(buffer)) != -1) {
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+}
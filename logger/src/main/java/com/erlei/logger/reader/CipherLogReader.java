@@ -0,0 +1,127 @@
+package com.erlei.logger.reader;
+
+import android.support.annotation.NonNull;
+
+import com.erlei.logger.writer.CipherLogWriter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import static com.erlei.logger.reader.Bytes.readFully;
+import static com.erlei.logger.reader.Bytes.readInt;
+import static com.erlei.logger.writer.CipherLogWriter.AAD_SIZE;
+import static com.erlei.logger.writer.CipherLogWriter.CHUNK_HEADER_SIZE;
+import static com.erlei.logger.writer.CipherLogWriter.CHUNK_MAGIC;
+import static com.erlei.logger.writer.CipherLogWriter.NONCE_SIZE;
+import static com.erlei.logger.writer.CipherLogWriter.TAG_SIZE;
+
+/**
+ * Describe : 解密 {@link CipherLogWriter} 写入的日志
+ * <p>
+ * Chunks which are truncated or fail authentication are skipped, the reader goes on at the next chunk magic.
+ */
+public final class CipherLogReader {
+
+    private CipherLogReader() {
+    }
+
+    /**
+     * @return the number of decrypted bytes
+     */
+    public static long decrypt(@NonNull InputStream input, @NonNull OutputStream output, @NonNull SecretKey key) throws IOException {
+        byte[] data = readFully(input);
+        Cipher cipher;
+        try {
+            cipher = Cipher.getInstance(CipherLogWriter.TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+        Inflater inflater = new Inflater(true);
+        byte[] compressed = new byte[0];
+        byte[] raw = new byte[0];
+        long decrypted = 0;
+        int position = 0;
+        try {
+            while (position + CHUNK_HEADER_SIZE <= data.length) {
+                int length = readInt(data, position + 4);
+                int rawLength = readInt(data, position + 8);
+                int start = position + CHUNK_HEADER_SIZE;
+                if (readInt(data, position) == CHUNK_MAGIC && length >= TAG_SIZE && rawLength >= 0
+                        && start + (long) length <= data.length) {
+                    try {
+                        cipher.init(Cipher.DECRYPT_MODE, key,
+                                new GCMParameterSpec(TAG_SIZE * 8, data, position + AAD_SIZE, NONCE_SIZE));
+                        cipher.updateAAD(data, position, AAD_SIZE);
+                        if (compressed.length < length) compressed = new byte[length];
+                        int compressedLength = cipher.doFinal(data, start, length, compressed, 0);
+                        if (raw.length < rawLength) raw = new byte[rawLength];
+                        if (inflate(inflater, compressed, compressedLength, raw, rawLength)) {
+                            output.write(raw, 0, rawLength);
+                            decrypted += rawLength;
+                            position = start + length;
+                            continue;
+                        }
+                    } catch (GeneralSecurityException e) {
+                        // truncated, corrupt, or another key
+                    }
+                }
+                position = indexOfMagic(data, position + 1);
+                if (position < 0) break;
+            }
+        } finally {
+            inflater.end();
+        }
+        return decrypted;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: CipherLogReader <file> <hex key>");
+            return;
+        }
+        String hex = args[1];
+        byte[] key = new byte[hex.length() / 2];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        try (InputStream input = new FileInputStream(args[0])) {
+            decrypt(input, System.out, CipherLogWriter.key(key));
+        }
+        System.out.flush();
+    }
+
+    private static boolean inflate(@NonNull Inflater inflater, @NonNull byte[] compressed, int length,
+                                   @NonNull byte[] raw, int rawLength) {
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        int count = 0;
+        try {
+            while (count < rawLength) {
+                int inflated = inflater.inflate(raw, count, rawLength - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += inflated;
+            }
+        } catch (DataFormatException e) {
+            return false;
+        }
+        return count == rawLength;
+    }
+
+    private static int indexOfMagic(@NonNull byte[] data, int from) {
+        for (int i = from; i <= data.length - 4; i++) {
+            if (readInt(data, i) == CHUNK_MAGIC) return i;
+        }
+        return -1;
+    }
+}
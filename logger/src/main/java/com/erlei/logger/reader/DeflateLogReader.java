@@ -0,0 +1,112 @@
+package com.erlei.logger.reader;
+
+import android.support.annotation.NonNull;
+
+import com.erlei.logger.writer.DeflateLogWriter;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static com.erlei.logger.reader.Bytes.indexOf;
+import static com.erlei.logger.reader.Bytes.readFully;
+import static com.erlei.logger.reader.Bytes.readInt;
+import static com.erlei.logger.writer.DeflateLogWriter.RECORD_HEADER_SIZE;
+import static com.erlei.logger.writer.DeflateLogWriter.SESSION_MAGIC;
+
+/**
+ * Describe : 解压 {@link DeflateLogWriter} 写入的日志
+ * <p>
+ * Frames which are truncated or fail their checksum end the session, the reader skips to the
+ * next session magic, so the logs written after a crash are still decoded.
+ */
+public final class DeflateLogReader {
+
+    private DeflateLogReader() {
+    }
+
+    /**
+     * @return the number of decoded bytes
+     */
+    public static long decode(@NonNull InputStream input, @NonNull OutputStream output) throws IOException {
+        byte[] data = readFully(input);
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[0];
+        long decoded = 0;
+        boolean inSession = false;
+        int position = 0;
+        try {
+            while (position + RECORD_HEADER_SIZE <= data.length) {
+                byte type = data[position];
+                int length = readInt(data, position + 1);
+                int uncompressedLength = readInt(data, position + 5);
+                int checksum = readInt(data, position + 9);
+                int start = position + RECORD_HEADER_SIZE;
+                boolean complete = length >= 0 && start + (long) length <= data.length;
+                if (type == DeflateLogWriter.TYPE_SESSION && complete && indexOf(data, SESSION_MAGIC, start) == start) {
+                    inflater.reset();
+                    inSession = true;
+                    position = start + length;
+                    continue;
+                }
+                if (type == DeflateLogWriter.TYPE_FRAME && complete && inSession && uncompressedLength >= 0) {
+                    if (buffer.length < uncompressedLength) buffer = new byte[uncompressedLength];
+                    int count = inflate(inflater, data, start, length, buffer, uncompressedLength);
+                    crc.reset();
+                    crc.update(buffer, 0, Math.max(count, 0));
+                    if (count == uncompressedLength && (int) crc.getValue() == checksum) {
+                        output.write(buffer, 0, count);
+                        decoded += count;
+                        position = start + length;
+                        continue;
+                    }
+                }
+                // truncated or corrupt, the rest of this session can not be inflated
+                inSession = false;
+                int next = indexOf(data, SESSION_MAGIC, position + RECORD_HEADER_SIZE + 1);
+                if (next < 0) break;
+                position = next - RECORD_HEADER_SIZE;
+            }
+        } finally {
+            inflater.end();
+        }
+        return decoded;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: DeflateLogReader <file>");
+            return;
+        }
+        try (InputStream input = new FileInputStream(args[0])) {
+            decode(input, System.out);
+        }
+        System.out.flush();
+    }
+
+    /**
+     * @return the number of bytes inflated, -1 if the data is corrupt
+     */
+    private static int inflate(@NonNull Inflater inflater, @NonNull byte[] data, int offset, int length,
+                               @NonNull byte[] buffer, int expected) {
+        inflater.setInput(data, offset, length);
+        int count = 0;
+        try {
+            while (count < expected) {
+                int inflated = inflater.inflate(buffer, count, expected - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += inflated;
+            }
+        } catch (DataFormatException e) {
+            return -1;
+        }
+        return count;
+    }
+}
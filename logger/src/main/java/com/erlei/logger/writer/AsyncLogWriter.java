@@ -3,6 +3,7 @@ package com.erlei.logger.writer;
 import android.os.Handler;
 import android.os.Message;
 import android.support.annotation.NonNull;
+import com.erlei.logger.LogLine;
 
 import java.io.IOException;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -48,6 +49,15 @@ public class AsyncLogWriter extends LogWriter implements Handler.Callback {
         return mWrittenBytes;
     }
 
+    /**
+     * The encoded message belongs to the line and is reused once the line is recycled,
+     * the queued bytes must be a copy
+     */
+    @Override
+    public void write(@NonNull LogLine log) throws IOException {
+        write(log.getMessage());
+    }
+
     @Override
     public void write(byte[] buffer, int off, int len) {
         mWrittenBytes += len;
@@ -0,0 +1,459 @@
+package com.erlei.logger.writer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.erlei.logger.LogLine;
+import com.erlei.logger.LogWriterFactory;
+import com.erlei.logger.format.PrintfMessageFormatter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describe : 二进制日志, 包装另一个 LogWriter
+ * <p>
+ * Every line is encoded as a length prefixed record straight from the {@link LogLine} fields into a
+ * reusable buffer, no text or json is built. A batch goes to the wrapped writer in one call.
+ * The time is stored as the difference to the previous line.
+ * <p>
+ * Modules, tags, extra keys and constant messages (a format string without args or throwable which is
+ * seen a second time) go into a per-file dictionary: a string is written once as an entry record when
+ * it is first used and then referenced by its id, so a short line takes a few bytes and the same string
+ * is not encoded twice.
+ * <p>
+ * A line with a format string and args is stored as a template once the format string is in the dictionary:
+ * the id of the format string and the typed args, {@link String#format} is not run on the device,
+ * the decoder runs it when the text is asked for. Only {@link PrintfMessageFormatter} lines are stored so,
+ * the lines of other {@link com.erlei.logger.format.MessageFormatter}s are formatted.
+ * A line with an arg which is not a boxed primitive or a CharSequence is formatted and stored as text.
+ * The entries are appended where they are first needed rather than in a header or trailer, so a file
+ * cut by a crash still holds every entry its lines refer to. A new writer, and so every rotated file,
+ * starts a new dictionary.
+ * <p>
+ * Layout, varints are unsigned LEB128, zigzag for signed values, id 0 is a null or empty string:
+ * <pre>
+ * record   = varint(bodyLength) type(1) body
+ * session  = type 1, {@link #SESSION_MAGIC}, resets the dictionary and the time base
+ * string   = type 2, varint(id) utf8(string)
+ * line     = type 3, varint(level) zigzag(time - previous time) varint(module id) varint(tag id)
+ *            varint(extraCount) (varint(key id) varint(valueLength) utf8(value)) * extraCount
+ *            utf8(message) up to the end of the record
+ * raw      = type 4, bytes which were not a log line, such as the file header
+ * constant = type 5, a line with varint(message id) in place of the message
+ * template = type 6, a line with varint(format id) varint(argCount) (type(1) value) * argCount in place of the message
+ * value    = zigzag varint for byte, short, int, long, the bits for float (4) and double (8),
+ *            varint for char, varint(length) utf8 for a string, nothing for null, true and false
+ * </pre>
+ * The message is the last field, so a record never ends with the 0 of an empty count, which a writer
+ * trimming trailing NULs after a crash would cut. Decode with {@link com.erlei.logger.reader.BinaryLogDecoder}.
+ */
+public class BinaryLogWriter extends LogWriter {
+
+    public static final byte TYPE_SESSION = 1;
+    public static final byte TYPE_STRING = 2;
+    public static final byte TYPE_LINE = 3;
+    public static final byte TYPE_RAW = 4;
+    public static final byte TYPE_CONSTANT = 5;
+    public static final byte TYPE_TEMPLATE = 6;
+
+    public static final byte ARG_NULL = 0;
+    public static final byte ARG_FALSE = 1;
+    public static final byte ARG_TRUE = 2;
+    public static final byte ARG_BYTE = 3;
+    public static final byte ARG_SHORT = 4;
+    public static final byte ARG_INT = 5;
+    public static final byte ARG_LONG = 6;
+    public static final byte ARG_FLOAT = 7;
+    public static final byte ARG_DOUBLE = 8;
+    public static final byte ARG_CHAR = 9;
+    public static final byte ARG_STRING = 10;
+    public static final byte[] SESSION_MAGIC = {(byte) 0x89, 'L', 'O', 'G', 'B', '\r', '\n', 0x1a};
+
+    /**
+     * A varint of an int takes at most 5 bytes
+     */
+    private static final int MAX_VARINT_SIZE = 5;
+    /**
+     * Bounds the memory held by constant messages, the other strings are few
+     */
+    private static final int MAX_CONSTANTS = 1024;
+    private static final int MAX_CONSTANT_LENGTH = 256;
+    private static final int CANDIDATES = 256;
+
+    private final LogWriter mWriter;
+    private final Map<String, Integer> mStringIds = new HashMap<>();
+    private int mConstants;
+    /**
+     * Messages seen once, by hash, a message becomes a constant when it is seen again,
+     * so messages built by concatenation do not fill the dictionary
+     */
+    private final String[] mCandidates = new String[CANDIDATES];
+    /**
+     * The args of the current template as strings, for those which are stored as strings
+     */
+    private String[] mArgStrings = new String[8];
+    private byte[] mBuffer = new byte[8 * 1024];
+    private int mLength;
+    private long mLastTime;
+    private long mUncompressedBytes;
+    private boolean mClosed;
+
+    public BinaryLogWriter(@NonNull LogWriter writer) throws IOException {
+        super(writer.lock);
+        mWriter = writer;
+        mUncompressedBytes = writer.getWrittenBytes();
+        synchronized (lock) {
+            writeRecordHeader(TYPE_SESSION, SESSION_MAGIC.length);
+            putBytes(SESSION_MAGIC, 0, SESSION_MAGIC.length);
+            drain();
+        }
+    }
+
+    /**
+     * Wraps the writers created by the factory, for
+     * {@link com.erlei.logger.printer.DiskPrintStrategy.Builder#writerFactory(LogWriterFactory)}
+     */
+    @NonNull
+    public static LogWriterFactory factory(@NonNull LogWriterFactory factory) {
+        return file -> {
+            LogWriter writer = factory.create(file);
+            try {
+                return new BinaryLogWriter(writer);
+            } catch (IOException e) {
+                // the wrapped writer is not handed out, nobody else closes it
+                try {
+                    writer.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        };
+    }
+
+    @Override
+    public long getWrittenBytes() {
+        return mWriter.getWrittenBytes();
+    }
+
+    /**
+     * @return the bytes of the records, before any compression of the wrapped writer
+     */
+    @Override
+    public long getUncompressedBytes() {
+        return mUncompressedBytes;
+    }
+
+    @Override
+    public void write(@NonNull LogLine log) throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            encode(log);
+            drain();
+        }
+    }
+
+    @Override
+    public void write(@NonNull List<LogLine> logs) throws IOException {
+        if (logs.isEmpty()) return;
+        synchronized (lock) {
+            checkOpen();
+            for (LogLine log : logs) {
+                if (log != null) encode(log);
+            }
+            drain();
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int off, int len) throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            writeRecordHeader(TYPE_RAW, len);
+            putBytes(buffer, off, len);
+            drain();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            mWriter.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            mClosed = true;
+            mWriter.close();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (mClosed) throw new IOException("writer is closed");
+    }
+
+    private void encode(@NonNull LogLine log) {
+        int moduleId = stringId(log.getModule());
+        int tagId = stringId(log.getTag());
+        long time = log.getTime();
+        long delta = time - mLastTime;
+        mLastTime = time;
+        Map<String, String> extra = log.peekExtra();
+        int extraCount = extra != null ? extra.size() : 0;
+        if (extraCount > 0) {
+            for (String key : extra.keySet()) {
+                stringId(key);
+            }
+        }
+        Object[] args = log.getArgs();
+        String format = log.getFormat();
+        // the decoder applies the args with String.format
+        boolean template = args != null && args.length > 0 && format != null && log.getThrowable() == null
+                && log.getMessageFormatter() != null && log.getMessageFormatter().getClass() == PrintfMessageFormatter.class
+                && isStorable(args);
+        int formatId = template ? constantId(format) : 0;
+        String message = null;
+        int messageId = 0;
+        int messageLength;
+        byte type;
+        if (formatId > 0) {
+            type = TYPE_TEMPLATE;
+            messageLength = varintSize(formatId) + argsSize(args);
+        } else {
+            message = log.getMessage();
+            // the same instance when there were no args or throwable to apply
+            messageId = message == format ? constantId(message) : 0;
+            type = messageId > 0 ? TYPE_CONSTANT : TYPE_LINE;
+            messageLength = messageId > 0 ? varintSize(messageId) : Utf8.encodedLength(message);
+        }
+
+        int bodyLength = varintSize(log.getLevel()) + varintSize(zigzag(delta)) + varintSize(moduleId)
+                + varintSize(tagId) + varintSize(extraCount) + messageLength;
+        if (extraCount > 0) {
+            for (Map.Entry<String, String> entry : extra.entrySet()) {
+                bodyLength += varintSize(stringId(entry.getKey())) + stringSize(valueOf(entry));
+            }
+        }
+        writeRecordHeader(type, bodyLength);
+        putVarint(log.getLevel());
+        putVarint(zigzag(delta));
+        putVarint(moduleId);
+        putVarint(tagId);
+        putVarint(extraCount);
+        if (extraCount > 0) {
+            for (Map.Entry<String, String> entry : extra.entrySet()) {
+                putVarint(stringId(entry.getKey()));
+                putString(valueOf(entry));
+            }
+        }
+        if (type == TYPE_TEMPLATE) {
+            putVarint(formatId);
+            putArgs(args);
+        } else if (messageId > 0) {
+            putVarint(messageId);
+        } else {
+            putUtf8(message, messageLength);
+        }
+    }
+
+    /**
+     * Other args, e.g. a BigInteger, a Date or a Formattable, would reach the decoder as their toString(),
+     * which %d, %tF or %h do not format the same way, their lines are stored as text
+     *
+     * @return true if every arg formats the same after it is decoded
+     */
+    private static boolean isStorable(@NonNull Object[] args) {
+        for (Object arg : args) {
+            if (arg != null && !(arg instanceof Boolean) && !(arg instanceof Byte) && !(arg instanceof Short)
+                    && !(arg instanceof Integer) && !(arg instanceof Long) && !(arg instanceof Float)
+                    && !(arg instanceof Double) && !(arg instanceof Character) && !(arg instanceof CharSequence)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the encoded size of the args, the args stored as strings are kept in {@link #mArgStrings}
+     */
+    private int argsSize(@NonNull Object[] args) {
+        if (mArgStrings.length < args.length) mArgStrings = new String[args.length];
+        int size = varintSize(args.length) + args.length;
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null || arg instanceof Boolean) {
+                continue;
+            } else if (arg instanceof Byte || arg instanceof Short || arg instanceof Integer || arg instanceof Long) {
+                size += varintSize(zigzag(((Number) arg).longValue()));
+            } else if (arg instanceof Float) {
+                size += 4;
+            } else if (arg instanceof Double) {
+                size += 8;
+            } else if (arg instanceof Character) {
+                size += varintSize((Character) arg);
+            } else {
+                String value = String.valueOf(arg);
+                mArgStrings[i] = value;
+                size += stringSize(value);
+            }
+        }
+        return size;
+    }
+
+    private void putArgs(@NonNull Object[] args) {
+        putVarint(args.length);
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null) {
+                mBuffer[mLength++] = ARG_NULL;
+            } else if (arg instanceof Boolean) {
+                mBuffer[mLength++] = (Boolean) arg ? ARG_TRUE : ARG_FALSE;
+            } else if (arg instanceof Byte) {
+                mBuffer[mLength++] = ARG_BYTE;
+                putVarint(zigzag((Byte) arg));
+            } else if (arg instanceof Short) {
+                mBuffer[mLength++] = ARG_SHORT;
+                putVarint(zigzag((Short) arg));
+            } else if (arg instanceof Integer) {
+                mBuffer[mLength++] = ARG_INT;
+                putVarint(zigzag((Integer) arg));
+            } else if (arg instanceof Long) {
+                mBuffer[mLength++] = ARG_LONG;
+                putVarint(zigzag((Long) arg));
+            } else if (arg instanceof Float) {
+                mBuffer[mLength++] = ARG_FLOAT;
+                putFixed(Float.floatToRawIntBits((Float) arg), 4);
+            } else if (arg instanceof Double) {
+                mBuffer[mLength++] = ARG_DOUBLE;
+                putFixed(Double.doubleToRawLongBits((Double) arg), 8);
+            } else if (arg instanceof Character) {
+                mBuffer[mLength++] = ARG_CHAR;
+                putVarint((Character) arg);
+            } else {
+                mBuffer[mLength++] = ARG_STRING;
+                putString(mArgStrings[i]);
+                mArgStrings[i] = null;
+            }
+        }
+    }
+
+    /**
+     * @return the id of the string if it is a constant, a format string or a message without args, 0 to write it inline
+     */
+    private int constantId(@NonNull String message) {
+        if (message.length() > MAX_CONSTANT_LENGTH) return 0;
+        Integer id = mStringIds.get(message);
+        if (id != null) return id;
+        if (mConstants >= MAX_CONSTANTS) return 0;
+        int slot = message.hashCode() & (CANDIDATES - 1);
+        if (!message.equals(mCandidates[slot])) {
+            mCandidates[slot] = message;
+            return 0;
+        }
+        mCandidates[slot] = null;
+        mConstants++;
+        return stringId(message);
+    }
+
+    /**
+     * @return the id of the string, writing its entry first if it is new, 0 for a null or empty string
+     */
+    private int stringId(@Nullable String value) {
+        if (value == null || value.isEmpty()) return 0;
+        Integer id = mStringIds.get(value);
+        if (id != null) return id;
+        id = mStringIds.size() + 1;
+        mStringIds.put(value, id);
+        int length = Utf8.encodedLength(value);
+        writeRecordHeader(TYPE_STRING, varintSize(id) + length);
+        putVarint(id);
+        putUtf8(value, length);
+        return id;
+    }
+
+    private void writeRecordHeader(byte type, int bodyLength) {
+        ensureCapacity(MAX_VARINT_SIZE + 1 + bodyLength);
+        putVarint(1 + bodyLength);
+        mBuffer[mLength++] = type;
+    }
+
+    private void drain() throws IOException {
+        if (mLength == 0) return;
+        mUncompressedBytes += mLength;
+        int length = mLength;
+        mLength = 0;
+        mWriter.write(mBuffer, 0, length);
+    }
+
+    private void ensureCapacity(int length) {
+        if (mLength + length > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mLength + length));
+        }
+    }
+
+    private void putBytes(@NonNull byte[] buffer, int off, int len) {
+        System.arraycopy(buffer, off, mBuffer, mLength, len);
+        mLength += len;
+    }
+
+    private void putString(@NonNull String value) {
+        int length = Utf8.encodedLength(value);
+        putVarint(length);
+        putUtf8(value, length);
+    }
+
+    private void putUtf8(@NonNull String value, int length) {
+        Utf8.encode(value, ByteBuffer.wrap(mBuffer, mLength, length));
+        mLength += length;
+    }
+
+    private void putFixed(long value, int size) {
+        for (int i = size - 1; i >= 0; i--) {
+            mBuffer[mLength++] = (byte) (value >>> (i * 8));
+        }
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            mBuffer[mLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mLength++] = (byte) value;
+    }
+
+    /**
+     * A null extra value is stored as an empty string
+     */
+    @NonNull
+    private static String valueOf(@NonNull Map.Entry<String, String> entry) {
+        String value = entry.getValue();
+        return value != null ? value : "";
+    }
+
+    private static int stringSize(@NonNull String value) {
+        int length = Utf8.encodedLength(value);
+        return varintSize(length) + length;
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,354 @@
+package com.erlei.logger.writer;
+
+import android.support.annotation.NonNull;
+
+import com.erlei.logger.LogLine;
+import com.erlei.logger.LogWriterFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Describe : 分块压缩的日志文件, 可以按时间查找
+ * <p>
+ * Lines are collected into blocks of about blockSize bytes, each block is deflated on its own and
+ * written with a header holding the time of its first and last line, the line count, both lengths
+ * and the crc32 of the raw bytes. {@link #close()} appends an index of all blocks and a trailer,
+ * so a reader can pick the blocks of a time range and only inflate those,
+ * see {@link com.erlei.logger.reader.BlockLogReader}.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ * block   = magic(4) firstTime(8) lastTime(8) lineCount(4) rawLength(4) compressedLength(4) crc32(4) data
+ * index   = (offset(8) firstTime(8) lastTime(8) lineCount(4) rawLength(4) compressedLength(4) crc32(4)) * blockCount
+ * trailer = indexOffset(8) blockCount(4) magic(4)
+ * </pre>
+ * A file without a valid trailer, left by a process which died, is indexed by walking the block
+ * headers, an incomplete last block is dropped. Reopening a file appends new blocks and rewrites the index.
+ */
+public class BlockLogWriter extends LogWriter {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    public static final int BLOCK_MAGIC = 0x424C4B31;
+    public static final int INDEX_MAGIC = 0x42494458;
+    public static final int BLOCK_HEADER_SIZE = 36;
+    public static final int INDEX_ENTRY_SIZE = 40;
+    public static final int TRAILER_SIZE = 16;
+
+    /**
+     * The max bytes per char in UTF-8, a surrogate pair takes 4 bytes for 2 chars
+     */
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private final int mBlockSize;
+    private final Deflater mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 mCrc = new CRC32();
+    private final List<Block> mBlocks;
+    private final ByteBuffer mHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+    private byte[] mRaw;
+    private int mRawLength;
+    private byte[] mCompressed;
+    private long mFirstTime;
+    private long mLastTime;
+    private int mLineCount;
+    private long mUncompressedBytes;
+    private boolean mClosed;
+
+    public BlockLogWriter(@NonNull File file) throws IOException {
+        this(file, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockLogWriter(@NonNull File file, int blockSize) throws IOException {
+        mBlockSize = blockSize > 0 ? blockSize : DEFAULT_BLOCK_SIZE;
+        mRaw = new byte[mBlockSize + 1024];
+        mCompressed = new byte[mBlockSize];
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        mChannel = mRandomAccessFile.getChannel();
+        try {
+            mBlocks = readIndex(mChannel);
+            long end = 0;
+            for (Block block : mBlocks) {
+                end = block.offset + BLOCK_HEADER_SIZE + block.compressedLength;
+                mUncompressedBytes += block.rawLength;
+            }
+            // drop the old index, or an incomplete block
+            mChannel.truncate(end);
+            mChannel.position(end);
+            mWrittenBytes = end;
+        } catch (IOException e) {
+            mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * For {@link com.erlei.logger.printer.DiskPrintStrategy.Builder#writerFactory(LogWriterFactory)}
+     */
+    @NonNull
+    public static LogWriterFactory factory(int blockSize) {
+        return file -> new BlockLogWriter(file, blockSize);
+    }
+
+    /**
+     * @return the bytes in the file, the block which is being filled is not included
+     */
+    @Override
+    public long getWrittenBytes() {
+        return mWrittenBytes;
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return mUncompressedBytes;
+    }
+
+    @Override
+    public void write(@NonNull LogLine log) throws IOException {
+        synchronized (lock) {
+            byte[] encoded = log.getEncodedMessage();
+            int count;
+            if (encoded != null) {
+                count = log.getEncodedLength();
+                ensureCapacity(count);
+                System.arraycopy(encoded, 0, mRaw, mRawLength, count);
+            } else {
+                String message = log.getMessage();
+                ensureCapacity(message.length() * MAX_BYTES_PER_CHAR);
+                count = Utf8.encode(message, mRaw, mRawLength);
+            }
+            append(count, log.getTime(), 1);
+        }
+    }
+
+    /**
+     * Bytes which are not a log line, such as the file header, are stamped with the current time
+     */
+    @Override
+    public void write(byte[] buffer, int off, int len) throws IOException {
+        synchronized (lock) {
+            ensureCapacity(len);
+            System.arraycopy(buffer, off, mRaw, mRawLength, len);
+            append(len, System.currentTimeMillis(), 0);
+        }
+    }
+
+    /**
+     * Ends the current block, even if it is not full
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            mClosed = true;
+            try {
+                writeBlock();
+                writeIndex();
+            } finally {
+                mDeflater.end();
+                mRandomAccessFile.close();
+            }
+        }
+    }
+
+    @NonNull
+    public List<Block> getBlocks() {
+        synchronized (lock) {
+            return new ArrayList<>(mBlocks);
+        }
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (mClosed) throw new IOException("writer is closed");
+        if (mRawLength + length > mRaw.length) {
+            mRaw = Arrays.copyOf(mRaw, Math.max(mRaw.length * 2, mRawLength + length));
+        }
+    }
+
+    private void append(int length, long time, int lines) throws IOException {
+        if (mRawLength == 0 && mLineCount == 0) {
+            mFirstTime = time;
+            mLastTime = time;
+        }
+        mFirstTime = Math.min(mFirstTime, time);
+        mLastTime = Math.max(mLastTime, time);
+        mRawLength += length;
+        mLineCount += lines;
+        mUncompressedBytes += length;
+        if (mRawLength >= mBlockSize) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (mRawLength == 0) return;
+        mCrc.reset();
+        mCrc.update(mRaw, 0, mRawLength);
+        mDeflater.reset();
+        mDeflater.setInput(mRaw, 0, mRawLength);
+        mDeflater.finish();
+        int compressedLength = 0;
+        while (!mDeflater.finished()) {
+            if (compressedLength == mCompressed.length) {
+                mCompressed = Arrays.copyOf(mCompressed, mCompressed.length * 2);
+            }
+            compressedLength += mDeflater.deflate(mCompressed, compressedLength, mCompressed.length - compressedLength);
+        }
+        Block block = new Block(mWrittenBytes, mFirstTime, mLastTime, mLineCount, mRawLength,
+                compressedLength, (int) mCrc.getValue());
+        mHeader.clear();
+        mHeader.putInt(BLOCK_MAGIC);
+        block.writeTo(mHeader);
+        mHeader.flip();
+        writeFully(mHeader);
+        writeFully(ByteBuffer.wrap(mCompressed, 0, compressedLength));
+        mWrittenBytes += BLOCK_HEADER_SIZE + compressedLength;
+        mBlocks.add(block);
+        mRawLength = 0;
+        mLineCount = 0;
+    }
+
+    private void writeIndex() throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(mBlocks.size() * INDEX_ENTRY_SIZE + TRAILER_SIZE);
+        for (Block block : mBlocks) {
+            index.putLong(block.offset);
+            block.writeTo(index);
+        }
+        index.putLong(mWrittenBytes);
+        index.putInt(mBlocks.size());
+        index.putInt(INDEX_MAGIC);
+        index.flip();
+        writeFully(index);
+    }
+
+    private void writeFully(@NonNull ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads the index from the trailer, or walks the block headers if the file has no valid trailer.
+     */
+    @NonNull
+    public static List<Block> readIndex(@NonNull FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Block> blocks = new ArrayList<>();
+        if (size >= TRAILER_SIZE) {
+            ByteBuffer trailer = readFully(channel, size - TRAILER_SIZE, TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            int count = trailer.getInt();
+            if (trailer.getInt() == INDEX_MAGIC && count >= 0 && indexOffset >= 0
+                    && indexOffset + (long) count * INDEX_ENTRY_SIZE + TRAILER_SIZE == size) {
+                ByteBuffer index = readFully(channel, indexOffset, count * INDEX_ENTRY_SIZE);
+                for (int i = 0; i < count; i++) {
+                    blocks.add(Block.readFrom(index.getLong(), index));
+                }
+                return blocks;
+            }
+        }
+        long position = 0;
+        while (position + BLOCK_HEADER_SIZE <= size) {
+            ByteBuffer header = readFully(channel, position, BLOCK_HEADER_SIZE);
+            if (header.getInt() != BLOCK_MAGIC) break;
+            Block block = Block.readFrom(position, header);
+            long end = position + BLOCK_HEADER_SIZE + block.compressedLength;
+            if (block.compressedLength < 0 || end > size) break;
+            blocks.add(block);
+            position = end;
+        }
+        return blocks;
+    }
+
+    @NonNull
+    private static ByteBuffer readFully(@NonNull FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * An entry of the block index
+     */
+    public static final class Block {
+
+        public final long offset;
+        public final long firstTime;
+        public final long lastTime;
+        public final int lineCount;
+        public final int rawLength;
+        public final int compressedLength;
+        public final int crc;
+
+        Block(long offset, long firstTime, long lastTime, int lineCount, int rawLength, int compressedLength, int crc) {
+            this.offset = offset;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+            this.lineCount = lineCount;
+            this.rawLength = rawLength;
+            this.compressedLength = compressedLength;
+            this.crc = crc;
+        }
+
+        /**
+         * @return the file offset of the compressed data
+         */
+        public long getDataOffset() {
+            return offset + BLOCK_HEADER_SIZE;
+        }
+
+        public boolean overlaps(long from, long to) {
+            return lastTime >= from && firstTime <= to;
+        }
+
+        private void writeTo(@NonNull ByteBuffer buffer) {
+            buffer.putLong(firstTime);
+            buffer.putLong(lastTime);
+            buffer.putInt(lineCount);
+            buffer.putInt(rawLength);
+            buffer.putInt(compressedLength);
+            buffer.putInt(crc);
+        }
+
+        @NonNull
+        private static Block readFrom(long offset, @NonNull ByteBuffer buffer) {
+            return new Block(offset, buffer.getLong(), buffer.getLong(), buffer.getInt(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt());
+        }
+
+        @Override
+        public String toString() {
+            return "Block{" +
+                    "offset=" + offset +
+                    ", firstTime=" + firstTime +
+                    ", lastTime=" + lastTime +
+                    ", lineCount=" + lineCount +
+                    ", rawLength=" + rawLength +
+                    ", compressedLength=" + compressedLength +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.erlei.logger.writer;
+
+import android.support.annotation.NonNull;
+
+import com.erlei.logger.LogWriterFactory;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Describe : 加密日志, 先压缩后加密, 包装另一个 LogWriter
+ * <p>
+ * The byte stream is cut into chunks of chunkBytes uncompressed bytes, or when a chunk is older than
+ * chunkMillis (checked on the next write, {@link #flush()} ends it at once). Every chunk is deflated on
+ * its own and sealed with AES/GCM under a random nonce, so each chunk decrypts without the others and a
+ * file cut by a crash still decrypts up to its last complete chunk. The cipher and the deflater are reused,
+ * a chunk costs one {@link Cipher#init} and no allocation, the JCE provider uses the AES instructions of
+ * the CPU where it has them.
+ * <p>
+ * Layout, big endian:
+ * <pre>
+ * chunk = magic(4) length(4) rawLength(4) nonce(12) data(length)
+ * data  = AES/GCM(deflate(raw)) with a 16 byte tag, the first 12 bytes of the chunk are authenticated too
+ * </pre>
+ * Decrypt with {@link com.erlei.logger.reader.CipherLogReader}.
+ */
+public class CipherLogWriter extends LogWriter {
+
+    public static final int DEFAULT_CHUNK_BYTES = 64 * 1024;
+    public static final long DEFAULT_CHUNK_MILLIS = 5000;
+
+    public static final int CHUNK_MAGIC = 0x4C4F4745;
+    public static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    public static final int NONCE_SIZE = 12;
+    public static final int TAG_SIZE = 16;
+    public static final int AAD_SIZE = 12;
+    public static final int CHUNK_HEADER_SIZE = AAD_SIZE + NONCE_SIZE;
+
+    private static final SecureRandom sRandom = new SecureRandom();
+
+    private final LogWriter mWriter;
+    private final SecretKey mKey;
+    private final int mChunkBytes;
+    private final long mChunkMillis;
+    private final Cipher mCipher;
+    private final Deflater mDeflater;
+    private final byte[] mNonce = new byte[NONCE_SIZE];
+    private byte[] mRaw;
+    private int mRawLength;
+    private byte[] mCompressed;
+    /**
+     * The chunk header followed by the encrypted bytes
+     */
+    private byte[] mChunk;
+    private long mChunkStart;
+    private long mUncompressedBytes;
+    private boolean mClosed;
+
+    public CipherLogWriter(@NonNull LogWriter writer, @NonNull SecretKey key) throws IOException {
+        this(writer, key, DEFAULT_CHUNK_BYTES, DEFAULT_CHUNK_MILLIS);
+    }
+
+    /**
+     * @param writer      receives the encrypted chunks
+     * @param key         an AES key of 16, 24 or 32 bytes
+     * @param chunkBytes  the uncompressed bytes after which a chunk is ended
+     * @param chunkMillis the age after which a chunk is ended, 0 to only end chunks by size
+     */
+    public CipherLogWriter(@NonNull LogWriter writer, @NonNull SecretKey key, int chunkBytes, long chunkMillis) throws IOException {
+        super(writer.lock);
+        mWriter = writer;
+        mKey = key;
+        mChunkBytes = chunkBytes > 0 ? chunkBytes : DEFAULT_CHUNK_BYTES;
+        mChunkMillis = Math.max(0, chunkMillis);
+        try {
+            mCipher = Cipher.getInstance(TRANSFORMATION);
+            // fail here rather than on the first chunk if the key does not fit
+            mCipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_SIZE * 8, nextNonce()));
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+        mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        mRaw = new byte[mChunkBytes];
+        mCompressed = new byte[mChunkBytes];
+        mChunk = new byte[CHUNK_HEADER_SIZE + mChunkBytes + TAG_SIZE];
+        mUncompressedBytes = writer.getWrittenBytes();
+    }
+
+    @NonNull
+    public static SecretKey key(@NonNull byte[] key) {
+        return new SecretKeySpec(key, "AES");
+    }
+
+    /**
+     * Wraps the writers created by the factory, for
+     * {@link com.erlei.logger.printer.DiskPrintStrategy.Builder#writerFactory(LogWriterFactory)}
+     */
+    @NonNull
+    public static LogWriterFactory factory(@NonNull LogWriterFactory factory, @NonNull SecretKey key) {
+        return file -> {
+            LogWriter writer = factory.create(file);
+            try {
+                return new CipherLogWriter(writer, key);
+            } catch (IOException e) {
+                // the wrapped writer is not handed out, nobody else closes it
+                try {
+                    writer.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * @return the encrypted bytes in the file
+     */
+    @Override
+    public long getWrittenBytes() {
+        return mWriter.getWrittenBytes();
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return mUncompressedBytes;
+    }
+
+    @Override
+    public void write(byte[] buffer, int off, int len) throws IOException {
+        synchronized (lock) {
+            if (mClosed) throw new IOException("writer is closed");
+            while (len > 0) {
+                if (mRawLength == 0) mChunkStart = System.currentTimeMillis();
+                int count = Math.min(len, mChunkBytes - mRawLength);
+                System.arraycopy(buffer, off, mRaw, mRawLength, count);
+                mRawLength += count;
+                mUncompressedBytes += count;
+                off += count;
+                len -= count;
+                if (mRawLength == mChunkBytes
+                        || (mChunkMillis > 0 && System.currentTimeMillis() - mChunkStart >= mChunkMillis)) {
+                    endChunk();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            endChunk();
+            mWriter.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            mClosed = true;
+            try {
+                endChunk();
+            } finally {
+                mDeflater.end();
+                mWriter.close();
+            }
+        }
+    }
+
+    private void endChunk() throws IOException {
+        if (mRawLength == 0) return;
+        int compressedLength = deflate();
+        int length = compressedLength + TAG_SIZE;
+        if (mChunk.length < CHUNK_HEADER_SIZE + length) {
+            mChunk = new byte[CHUNK_HEADER_SIZE + length];
+        }
+        writeInt(mChunk, 0, CHUNK_MAGIC);
+        writeInt(mChunk, 4, length);
+        writeInt(mChunk, 8, mRawLength);
+        System.arraycopy(nextNonce(), 0, mChunk, AAD_SIZE, NONCE_SIZE);
+        try {
+            mCipher.init(Cipher.ENCRYPT_MODE, mKey, new GCMParameterSpec(TAG_SIZE * 8, mNonce));
+            mCipher.updateAAD(mChunk, 0, AAD_SIZE);
+            length = mCipher.doFinal(mCompressed, 0, compressedLength, mChunk, CHUNK_HEADER_SIZE);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+        mWriter.write(mChunk, 0, CHUNK_HEADER_SIZE + length);
+        mRawLength = 0;
+    }
+
+    private int deflate() {
+        mDeflater.reset();
+        mDeflater.setInput(mRaw, 0, mRawLength);
+        mDeflater.finish();
+        int count = 0;
+        while (!mDeflater.finished()) {
+            if (count == mCompressed.length) {
+                mCompressed = Arrays.copyOf(mCompressed, mCompressed.length * 2);
+            }
+            count += mDeflater.deflate(mCompressed, count, mCompressed.length - count);
+        }
+        return count;
+    }
+
+    @NonNull
+    private byte[] nextNonce() {
+        sRandom.nextBytes(mNonce);
+        return mNonce;
+    }
+
+    private static void writeInt(@NonNull byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,113 @@
+package com.erlei.logger.writer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RestrictTo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Describe : mmap 日志文件已写入的真实长度
+ * <p>
+ * The writers which map a log file pad it beyond the data. The committed length is kept in a small
+ * memory-mapped file next to the log, {@code .name.len}, and updated after every write,
+ * so a file left by a dead process is trimmed in O(1) instead of searching for the NUL padding.
+ * It is not stored in a header of the log file itself, which has to stay plain text or json.
+ * <p>
+ * Layout, in native byte order as written by the JNI writer: magic int, version int, length long.
+ * It is deleted when the writer is closed.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class CommittedLength implements Closeable {
+
+    static final int MAGIC = 0x4C4C454E;
+    static final int VERSION = 1;
+    static final int SIZE = 16;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_LENGTH = 8;
+
+    private final File mFile;
+    private final RandomAccessFile mRandomAccessFile;
+    private final MappedByteBuffer mBuffer;
+
+    CommittedLength(@NonNull File logFile, long length) throws IOException {
+        mFile = getFile(logFile);
+        mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        try {
+            mBuffer = mRandomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+        } catch (IOException e) {
+            mRandomAccessFile.close();
+            throw e;
+        }
+        mBuffer.order(ByteOrder.nativeOrder());
+        mBuffer.putInt(OFFSET_VERSION, VERSION);
+        mBuffer.putLong(OFFSET_LENGTH, length);
+        mBuffer.putInt(OFFSET_MAGIC, MAGIC);
+    }
+
+    void set(long length) {
+        mBuffer.putLong(OFFSET_LENGTH, length);
+    }
+
+    /**
+     * Called when the log file has been closed with its exact length
+     */
+    @Override
+    public void close() throws IOException {
+        mRandomAccessFile.close();
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+    }
+
+    @NonNull
+    public static File getFile(@NonNull File logFile) {
+        return new File(logFile.getParentFile(), "." + logFile.getName() + ".len");
+    }
+
+    /**
+     * @return the committed length of the log file, -1 if it is unknown
+     */
+    public static long read(@NonNull File logFile) {
+        File file = getFile(logFile);
+        if (file.length() < SIZE) return -1;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            ByteBuffer buffer = ByteBuffer.allocate(SIZE).order(ByteOrder.nativeOrder());
+            randomAccessFile.readFully(buffer.array());
+            if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION) return -1;
+            long length = buffer.getLong(OFFSET_LENGTH);
+            return length < 0 || length > logFile.length() ? -1 : length;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Cuts the padding left at the end of a log file whose writer was not closed.
+     *
+     * @param replacement appended after the committed data
+     * @return false if the committed length is unknown
+     */
+    public static boolean trim(@NonNull File logFile, @NonNull String replacement) throws IOException {
+        long length = read(logFile);
+        if (length < 0) return false;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(logFile, "rw")) {
+            randomAccessFile.setLength(length);
+            if (!replacement.isEmpty()) {
+                randomAccessFile.seek(length);
+                randomAccessFile.write(replacement.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        getFile(logFile).delete();
+        return true;
+    }
+}
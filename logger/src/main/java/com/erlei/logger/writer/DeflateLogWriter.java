@@ -0,0 +1,169 @@
+package com.erlei.logger.writer;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Describe : 压缩日志, 包装另一个 LogWriter
+ * <p>
+ * The byte stream is deflated and cut into frames with a sync flush, when a frame holds
+ * frameBytes uncompressed bytes or is older than frameMillis (checked on the next write,
+ * {@link #flush()} ends it at once). The dictionary is kept across frames, so the ratio stays close
+ * to one deflate stream, while a truncated file still decodes up to its last complete frame.
+ * <p>
+ * Layout, big endian, every writer session starts with a session record which resets the inflater:
+ * <pre>
+ * record  = type(1) length(4) uncompressedLength(4) crc32(4) data(length)
+ * session = type 1, data = {@link #SESSION_MAGIC}
+ * frame   = type 2, data = the deflate bytes ending with a sync flush, crc32 of the uncompressed bytes
+ * </pre>
+ * A session cut by a crash is followed by the next one, the reader resynchronizes on the session magic.
+ * Decode with {@link com.erlei.logger.reader.DeflateLogReader}.
+ */
+public class DeflateLogWriter extends LogWriter {
+
+    public static final int DEFAULT_FRAME_BYTES = 64 * 1024;
+    public static final long DEFAULT_FRAME_MILLIS = 5000;
+
+    public static final byte TYPE_SESSION = 1;
+    public static final byte TYPE_FRAME = 2;
+    public static final int RECORD_HEADER_SIZE = 13;
+    public static final byte[] SESSION_MAGIC = {(byte) 0x89, 'L', 'O', 'G', 'Z', '\r', '\n', 0x1a};
+
+    private final LogWriter mWriter;
+    private final int mFrameBytes;
+    private final long mFrameMillis;
+    private final Deflater mDeflater;
+    private final CRC32 mCrc = new CRC32();
+    /**
+     * The record header followed by the compressed bytes of the current frame
+     */
+    private byte[] mFrame = new byte[RECORD_HEADER_SIZE + 8 * 1024];
+    private int mFrameLength = RECORD_HEADER_SIZE;
+    private int mFrameUncompressed;
+    private long mFrameStart;
+    private long mUncompressedBytes;
+    private boolean mClosed;
+
+    public DeflateLogWriter(@NonNull LogWriter writer) throws IOException {
+        this(writer, Deflater.DEFAULT_COMPRESSION, DEFAULT_FRAME_BYTES, DEFAULT_FRAME_MILLIS);
+    }
+
+    /**
+     * @param writer      receives the compressed records
+     * @param level       the {@link Deflater} compression level
+     * @param frameBytes  the uncompressed bytes after which a frame is ended
+     * @param frameMillis the age after which a frame is ended, 0 to only end frames by size
+     */
+    public DeflateLogWriter(@NonNull LogWriter writer, int level, int frameBytes, long frameMillis) throws IOException {
+        super(writer.lock);
+        mWriter = writer;
+        mFrameBytes = frameBytes > 0 ? frameBytes : DEFAULT_FRAME_BYTES;
+        mFrameMillis = Math.max(0, frameMillis);
+        mDeflater = new Deflater(level, true);
+        // the uncompressed size of what the file already holds is unknown, its length is a lower bound
+        mUncompressedBytes = writer.getWrittenBytes();
+        synchronized (lock) {
+            byte[] session = new byte[RECORD_HEADER_SIZE + SESSION_MAGIC.length];
+            writeHeader(session, TYPE_SESSION, SESSION_MAGIC.length, 0, 0);
+            System.arraycopy(SESSION_MAGIC, 0, session, RECORD_HEADER_SIZE, SESSION_MAGIC.length);
+            mWriter.write(session, 0, session.length);
+        }
+    }
+
+    /**
+     * @return the compressed bytes in the file
+     */
+    @Override
+    public long getWrittenBytes() {
+        return mWriter.getWrittenBytes();
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return mUncompressedBytes;
+    }
+
+    @Override
+    public void write(byte[] buffer, int off, int len) throws IOException {
+        synchronized (lock) {
+            if (mClosed) throw new IOException("writer is closed");
+            if (len <= 0) return;
+            if (mFrameUncompressed == 0) mFrameStart = System.currentTimeMillis();
+            mCrc.update(buffer, off, len);
+            mDeflater.setInput(buffer, off, len);
+            deflate(Deflater.NO_FLUSH);
+            mFrameUncompressed += len;
+            mUncompressedBytes += len;
+            if (mFrameUncompressed >= mFrameBytes
+                    || (mFrameMillis > 0 && System.currentTimeMillis() - mFrameStart >= mFrameMillis)) {
+                endFrame();
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            endFrame();
+            mWriter.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            mClosed = true;
+            try {
+                endFrame();
+            } finally {
+                mDeflater.end();
+                mWriter.close();
+            }
+        }
+    }
+
+    private void endFrame() throws IOException {
+        if (mFrameUncompressed == 0) return;
+        deflate(Deflater.SYNC_FLUSH);
+        writeHeader(mFrame, TYPE_FRAME, mFrameLength - RECORD_HEADER_SIZE, mFrameUncompressed, (int) mCrc.getValue());
+        mWriter.write(mFrame, 0, mFrameLength);
+        mFrameLength = RECORD_HEADER_SIZE;
+        mFrameUncompressed = 0;
+        mCrc.reset();
+    }
+
+    private void deflate(int flush) {
+        while (true) {
+            if (mFrameLength == mFrame.length) {
+                mFrame = Arrays.copyOf(mFrame, mFrame.length * 2);
+            }
+            int count = mDeflater.deflate(mFrame, mFrameLength, mFrame.length - mFrameLength, flush);
+            mFrameLength += count;
+            // the output was not filled, so everything available has been written
+            if (mFrameLength < mFrame.length && (flush != Deflater.NO_FLUSH || mDeflater.needsInput())) {
+                return;
+            }
+        }
+    }
+
+    private static void writeHeader(@NonNull byte[] buffer, byte type, int length, int uncompressedLength, int crc) {
+        buffer[0] = type;
+        writeInt(buffer, 1, length);
+        writeInt(buffer, 5, uncompressedLength);
+        writeInt(buffer, 9, crc);
+    }
+
+    private static void writeInt(@NonNull byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
@@ -1,9 +1,13 @@
 package com.erlei.logger.writer;
 
+import android.support.annotation.NonNull;
+import com.erlei.logger.LogLine;
+
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.List;
 
 
 /**
@@ -20,7 +24,7 @@ public class FileLogWriter extends LogWriter {
         mFile = file;
         try {
             mWrittenBytes = mFile.length();
-            mWriter = new FileOutputStream(mFile);
+            mWriter = new FileOutputStream(mFile, true);
         } catch (FileNotFoundException e) {
             e.printStackTrace();
         }
@@ -31,6 +35,14 @@ public class FileLogWriter extends LogWriter {
         return mWrittenBytes;
     }
 
+    /**
+     * The whole batch is written with one syscall
+     */
+    @Override
+    public void write(@NonNull List<LogLine> logs) throws IOException {
+        writeBatch(logs);
+    }
+
     @Override
     public void write(byte[] buffer, int off, int len) throws IOException {
         mWrittenBytes += len;
@@ -8,6 +8,7 @@ import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -28,6 +29,10 @@ public abstract class LogWriter implements Closeable, Flushable {
      */
     protected final Object lock;
     protected long mWrittenBytes;
+    /**
+     * Reused by {@link #writeBatch(List)}, guarded by {@link #lock}
+     */
+    private byte[] mBatchBuffer;
 
     /**
      * Creates a new LogWriter whose critical sections will
@@ -73,8 +78,16 @@ public abstract class LogWriter implements Closeable, Flushable {
     }
 
 
+    /**
+     * Writes the bytes of the line if its format strategy encoded it, see {@link LogLine#getEncodedMessage()}
+     */
     public void write(@NonNull LogLine log) throws IOException {
-        write(log.getMessage());
+        byte[] encoded = log.getEncodedMessage();
+        if (encoded != null) {
+            write(encoded, 0, log.getEncodedLength());
+        } else {
+            write(log.getMessage());
+        }
     }
 
     public void write(@NonNull List<LogLine> logs) throws IOException {
@@ -84,8 +97,48 @@ public abstract class LogWriter implements Closeable, Flushable {
         }
     }
 
+    /**
+     * Encodes the messages of the whole batch into one reusable buffer and writes it with a single
+     * {@link #write(byte[], int, int)} call, for writers whose per-call cost (syscall, JNI) dominates.
+     *
+     * @param logs log infos
+     * @throws IOException If an I/O error occurs
+     */
+    protected void writeBatch(@NonNull List<LogLine> logs) throws IOException {
+        if (logs.isEmpty()) return;
+        synchronized (lock) {
+            byte[] buffer = mBatchBuffer;
+            if (buffer == null) buffer = new byte[8 * 1024];
+            int length = 0;
+            for (LogLine log : logs) {
+                if (log == null) continue;
+                byte[] bytes = log.getEncodedMessage();
+                int count = log.getEncodedLength();
+                if (bytes == null) {
+                    bytes = log.getMessage().getBytes(StandardCharsets.UTF_8);
+                    count = bytes.length;
+                }
+                if (length + count > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + count));
+                }
+                System.arraycopy(bytes, 0, buffer, length, count);
+                length += count;
+            }
+            mBatchBuffer = buffer;
+            write(buffer, 0, length);
+        }
+    }
+
     public abstract long getWrittenBytes();
 
+    /**
+     * @return the bytes written before compression, the same as {@link #getWrittenBytes()}
+     * for writers which do not compress
+     */
+    public long getUncompressedBytes() {
+        return getWrittenBytes();
+    }
+
     @NonNull
     public LogWriter append(@Nullable CharSequence csq) throws IOException {
         CharSequence cs = (csq == null ? "null" : csq);
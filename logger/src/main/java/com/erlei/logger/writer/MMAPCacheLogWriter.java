@@ -0,0 +1,495 @@
+package com.erlei.logger.writer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.erlei.logger.LogFileManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Describe : 两级缓存的 mmap 写入，类似 Logan
+ * <p>
+ * Producers append into one of the two regions of a fixed, memory-mapped cache file,
+ * the hot path is a copy into memory which is already mapped. When a region is full
+ * it is handed to a background thread which compresses it and appends it to the log file,
+ * while producers keep writing into the other region.
+ * <p>
+ * The cache file survives process death: the next writer opened on it, or {@link #recover(File)}
+ * which runs in the background from {@link LogFileManager#init(File)}, appends the data left
+ * in the regions to the log file recorded in its header.
+ * <p>
+ * Every write is framed as a record {@code [length][crc32][payload]} followed by a zero length
+ * terminator, so the recovery walks the records of each region and stops exactly at the first
+ * one which is incomplete. The regions are recovered in the order of their sequence numbers.
+ * <p>
+ * Every spilled region is a complete gzip member, so the log file can be read with zcat.
+ * The length of the log file is recorded before a spill starts, a member which was cut by a
+ * crash is truncated and written again by the recovery. A region whose spill failed keeps its sequence, it is
+ * spilled again before it is reused, and a writer closed with such a region leaves it to the recovery.
+ * {@link #getWrittenBytes()} is the length of the log file, which lags behind until the regions are spilled,
+ * {@link #getUncompressedBytes()} counts the writes of this writer.
+ */
+public class MMAPCacheLogWriter extends LogWriter {
+
+    public static final int DEFAULT_REGION_SIZE = 40 * MappedLogWriter.PAGE_SIZE;
+    public static final String CACHE_SUFFIX = ".mmap";
+
+    static final int MAGIC = 0x4C4F4743;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = MappedLogWriter.PAGE_SIZE;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_VERSION = 4;
+    private static final int OFFSET_REGION_SIZE = 8;
+    private static final int OFFSET_FLAGS = 12;
+    private static final int OFFSET_ACTIVE_REGION = 16;
+    static final int OFFSET_SPILL_POSITION = 20;
+    private static final int OFFSET_REGION_SEQUENCE = 36;
+    private static final int OFFSET_TARGET_LENGTH = 52;
+    private static final int OFFSET_TARGET = 56;
+
+    private static ExecutorService sSpillExecutor;
+    /**
+     * Serializes the recovery and the writers of this process, file locks only work between processes
+     */
+    private static final Object sCacheLock = new Object();
+
+    private final File mFile;
+    private final File mCacheFile;
+    private final int mRegionSize;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileLock mFileLock;
+    private final MappedByteBuffer mBuffer;
+    /**
+     * Used by the spill thread only, it has its own position
+     */
+    private final ByteBuffer mSpillBuffer;
+    private final byte[] mSpillBytes;
+    private final FileOutputStream mOutput;
+    private final GzipEncoder mEncoder = new GzipEncoder();
+    private final CRC32 mCrc = new CRC32();
+    private final CRC32 mSpillCrc = new CRC32();
+    private final boolean[] mSpilling = new boolean[2];
+    private final boolean[] mSpillFailed = new boolean[2];
+    private final int[] mSpillLength = new int[2];
+    private int mActiveRegion;
+    private int mActiveLength;
+    private long mRegionSequence;
+    private volatile long mCompressedBytes;
+    private boolean mClosed;
+
+    /**
+     * Uses the default cache file in {@link LogFileManager#getCacheDir()}
+     */
+    public MMAPCacheLogWriter(@NonNull File file) throws IOException {
+        this(file, new File(LogFileManager.getCacheDir(), "default" + CACHE_SUFFIX));
+    }
+
+    public MMAPCacheLogWriter(@NonNull File file, @NonNull File cacheFile) throws IOException {
+        this(file, cacheFile, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param file       the log file
+     * @param cacheFile  the memory-mapped cache file, only one writer can use it at a time
+     * @param regionSize the size of each of the two regions, rounded up to a multiple of the page size
+     */
+    public MMAPCacheLogWriter(@NonNull File file, @NonNull File cacheFile, int regionSize) throws IOException {
+        if (regionSize <= 0) regionSize = DEFAULT_REGION_SIZE;
+        mFile = file;
+        mCacheFile = cacheFile;
+        mRegionSize = (regionSize + MappedLogWriter.PAGE_SIZE - 1) / MappedLogWriter.PAGE_SIZE * MappedLogWriter.PAGE_SIZE;
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            parent.mkdirs();
+        }
+        mRandomAccessFile = new RandomAccessFile(cacheFile, "rw");
+        synchronized (sCacheLock) {
+            mFileLock = tryLock(mRandomAccessFile);
+            if (mFileLock == null) {
+                mRandomAccessFile.close();
+                throw new IOException(cacheFile + " is already used by another writer");
+            }
+            try {
+                recover(mRandomAccessFile.getChannel());
+                mBuffer = mRandomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + 2L * mRegionSize);
+                mSpillBuffer = mBuffer.duplicate();
+                mSpillBytes = new byte[mRegionSize];
+                writeHeader(file);
+                mOutput = new FileOutputStream(file, true);
+            } catch (IOException e) {
+                mFileLock.release();
+                mRandomAccessFile.close();
+                throw e;
+            }
+        }
+        mCompressedBytes = file.length();
+    }
+
+    @NonNull
+    public File getFile() {
+        return mFile;
+    }
+
+    @NonNull
+    public File getCacheFile() {
+        return mCacheFile;
+    }
+
+    @Override
+    public long getWrittenBytes() {
+        return mCompressedBytes;
+    }
+
+    @Override
+    public long getUncompressedBytes() {
+        return mWrittenBytes;
+    }
+
+    @Override
+    public void write(byte[] buffer, int off, int len) throws IOException {
+        synchronized (lock) {
+            if (mClosed) throw new IOException("writer is closed");
+            while (len > 0) {
+                if (mRegionSize - mActiveLength <= RECORD_HEADER_SIZE) {
+                    swapRegion();
+                }
+                int count = Math.min(len, mRegionSize - mActiveLength - RECORD_HEADER_SIZE);
+                int position = regionOffset(mActiveRegion) + mActiveLength;
+                int end = mActiveLength + RECORD_HEADER_SIZE + count;
+                mCrc.reset();
+                mCrc.update(buffer, off, count);
+                mBuffer.position(position + RECORD_HEADER_SIZE);
+                mBuffer.put(buffer, off, count);
+                if (end + 4 <= mRegionSize) {
+                    mBuffer.putInt(regionOffset(mActiveRegion) + end, 0);
+                }
+                mBuffer.putInt(position + 4, (int) mCrc.getValue());
+                // the record becomes visible to the recovery when its length is written
+                mBuffer.putInt(position, count);
+                mActiveLength = end;
+                mWrittenBytes += count;
+                off += count;
+                len -= count;
+            }
+        }
+    }
+
+    /**
+     * Spills the active region and waits until everything written so far is in the log file.
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            if (mActiveLength > 0) swapRegion();
+            awaitSpill(0);
+            awaitSpill(1);
+            retrySpill(0);
+            retrySpill(1);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (mClosed) return;
+            try {
+                flush();
+            } finally {
+                mClosed = true;
+                try {
+                    mEncoder.end();
+                    mOutput.close();
+                    if (!mSpillFailed[0] && !mSpillFailed[1]) {
+                        // nothing left to recover
+                        mBuffer.putInt(OFFSET_MAGIC, 0);
+                    }
+                    mBuffer.force();
+                } finally {
+                    mFileLock.release();
+                    mRandomAccessFile.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the full active region to the spill thread and switches to the other one,
+     * waiting for it if it is still being spilled.
+     */
+    private void swapRegion() throws IOException {
+        int full = mActiveRegion;
+        int next = 1 - full;
+        awaitSpill(next);
+        if (retrySpill(next)) {
+            // failed twice, the region is reused and its records are lost
+            mSpillFailed[next] = false;
+        }
+        int length = mActiveLength;
+        mSpilling[full] = true;
+        mSpillLength[full] = length;
+        getSpillExecutor().execute(() -> spill(full, length));
+        activateRegion(next);
+    }
+
+    /**
+     * Spills a region whose spill failed again on the calling thread, no spill is running meanwhile
+     *
+     * @return true if it failed again
+     */
+    private boolean retrySpill(int region) {
+        if (!mSpillFailed[region]) return false;
+        spill(region, mSpillLength[region]);
+        return mSpillFailed[region];
+    }
+
+    private void activateRegion(int region) {
+        mActiveRegion = region;
+        mActiveLength = 0;
+        mBuffer.putInt(regionOffset(region), 0);
+        mBuffer.putLong(OFFSET_SPILL_POSITION + 8 * region, -1);
+        mBuffer.putLong(OFFSET_REGION_SEQUENCE + 8 * region, mRegionSequence++);
+        mBuffer.putInt(OFFSET_ACTIVE_REGION, region);
+    }
+
+    private void awaitSpill(int region) {
+        boolean interrupted = false;
+        while (mSpilling[region]) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Runs on the spill thread, or on the writer thread for a retry
+     */
+    private void spill(int region, int length) {
+        boolean spilled = false;
+        long position = -1;
+        try {
+            ByteBuffer records = mSpillBuffer.duplicate();
+            records.position(regionOffset(region));
+            records.limit(regionOffset(region) + length);
+            int payload = readRecords(records.slice(), mSpillBytes, mSpillCrc);
+            position = mOutput.getChannel().size();
+            mSpillBuffer.putLong(OFFSET_SPILL_POSITION + 8 * region, position);
+            mEncoder.writeMember(mOutput, mSpillBytes, payload);
+            mCompressedBytes = mOutput.getChannel().size();
+            spilled = true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            dropCutMember(region, position);
+        } finally {
+            synchronized (lock) {
+                // the records stay in the cache until they are in the log file
+                if (spilled) mBuffer.putLong(OFFSET_REGION_SEQUENCE + 8 * region, -1);
+                mSpillFailed[region] = !spilled;
+                mSpilling[region] = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Truncates what a failed spill wrote, the members spilled later are not cut by the recovery of this region
+     */
+    private void dropCutMember(int region, long position) {
+        if (position < 0) return;
+        try {
+            mOutput.getChannel().truncate(position);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mSpillBuffer.putLong(OFFSET_SPILL_POSITION + 8 * region, -1);
+    }
+
+    private void writeHeader(@NonNull File file) throws IOException {
+        byte[] target = file.getAbsolutePath().getBytes(StandardCharsets.UTF_8);
+        if (OFFSET_TARGET + target.length > HEADER_SIZE) {
+            throw new IOException("The path of " + file + " is too long");
+        }
+        mBuffer.putInt(OFFSET_VERSION, VERSION);
+        mBuffer.putInt(OFFSET_REGION_SIZE, mRegionSize);
+        mBuffer.putInt(OFFSET_FLAGS, 0);
+        mBuffer.putLong(OFFSET_REGION_SEQUENCE, -1);
+        mBuffer.putLong(OFFSET_REGION_SEQUENCE + 8, -1);
+        mBuffer.putInt(OFFSET_TARGET_LENGTH, target.length);
+        mBuffer.position(OFFSET_TARGET);
+        mBuffer.put(target);
+        activateRegion(0);
+        // written last, a header with a valid magic is always complete
+        mBuffer.putInt(OFFSET_MAGIC, MAGIC);
+    }
+
+    private int regionOffset(int region) {
+        return HEADER_SIZE + region * mRegionSize;
+    }
+
+    /**
+     * Appends what a dead process left in the cache file to the log file recorded in its header
+     * and resets the cache. It does nothing if the cache is used by a live writer.
+     *
+     * @return false if the cache is in use
+     */
+    public static boolean recover(@NonNull File cacheFile) throws IOException {
+        if (!cacheFile.exists()) return true;
+        synchronized (sCacheLock) {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(cacheFile, "rw")) {
+                FileLock fileLock = tryLock(randomAccessFile);
+                if (fileLock == null) return false;
+                try {
+                    recover(randomAccessFile.getChannel());
+                } finally {
+                    fileLock.release();
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The region with the lower sequence was filled first, it may have been cut in the middle of
+     * its spill, in which case the log file is truncated to where the spill started.
+     */
+    private static void recover(@NonNull FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) return;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) return;
+        }
+        if (header.getInt(OFFSET_MAGIC) != MAGIC || header.getInt(OFFSET_VERSION) != VERSION) return;
+        int regionSize = header.getInt(OFFSET_REGION_SIZE);
+        int targetLength = header.getInt(OFFSET_TARGET_LENGTH);
+        if (regionSize <= 0 || targetLength <= 0 || OFFSET_TARGET + targetLength > HEADER_SIZE) return;
+        File target = new File(new String(header.array(), OFFSET_TARGET, targetLength, StandardCharsets.UTF_8));
+        long sequence0 = header.getLong(OFFSET_REGION_SEQUENCE);
+        long sequence1 = header.getLong(OFFSET_REGION_SEQUENCE + 8);
+        int first = sequence1 >= 0 && (sequence0 < 0 || sequence1 < sequence0) ? 1 : 0;
+        GzipEncoder encoder = new GzipEncoder();
+        CRC32 crc = new CRC32();
+        ByteBuffer records = ByteBuffer.allocate(regionSize);
+        byte[] payload = new byte[regionSize];
+        try (FileOutputStream output = new FileOutputStream(target, true)) {
+            for (int region : new int[]{first, 1 - first}) {
+                if (header.getLong(OFFSET_REGION_SEQUENCE + 8 * region) < 0) continue;
+                records.clear();
+                long position = HEADER_SIZE + (long) region * regionSize;
+                while (records.hasRemaining()) {
+                    if (channel.read(records, position + records.position()) < 0) break;
+                }
+                records.flip();
+                int length = readRecords(records, payload, crc);
+                if (length == 0) continue;
+                long spillPosition = header.getLong(OFFSET_SPILL_POSITION + 8 * region);
+                if (spillPosition >= 0 && spillPosition < output.getChannel().size()) {
+                    output.getChannel().truncate(spillPosition);
+                }
+                encoder.writeMember(output, payload, length);
+            }
+        } finally {
+            encoder.end();
+        }
+        channel.write(ByteBuffer.allocate(4), OFFSET_MAGIC);
+    }
+
+    /**
+     * Copies the payloads of the complete records into the given array
+     *
+     * @return the number of payload bytes
+     */
+    private static int readRecords(@NonNull ByteBuffer records, @NonNull byte[] payload, @NonNull CRC32 crc) {
+        int length = 0;
+        while (records.remaining() >= RECORD_HEADER_SIZE) {
+            int count = records.getInt();
+            int checksum = records.getInt();
+            if (count <= 0 || count > records.remaining() || length + count > payload.length) break;
+            records.get(payload, length, count);
+            crc.reset();
+            crc.update(payload, length, count);
+            if ((int) crc.getValue() != checksum) break;
+            length += count;
+        }
+        return length;
+    }
+
+    @Nullable
+    private static FileLock tryLock(@NonNull RandomAccessFile file) throws IOException {
+        try {
+            return file.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    @NonNull
+    private static synchronized ExecutorService getSpillExecutor() {
+        if (sSpillExecutor == null) {
+            sSpillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MMAPCacheLogWriter-spill");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sSpillExecutor;
+    }
+
+    /**
+     * Writes a buffer as one complete gzip member, the deflater is reused between members
+     */
+    private static final class GzipEncoder {
+
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+        private final Deflater mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 mCrc = new CRC32();
+        private final byte[] mBuffer = new byte[8 * 1024];
+
+        void writeMember(@NonNull OutputStream output, @NonNull byte[] data, int length) throws IOException {
+            mCrc.reset();
+            mCrc.update(data, 0, length);
+            mDeflater.reset();
+            mDeflater.setInput(data, 0, length);
+            mDeflater.finish();
+            output.write(HEADER);
+            while (!mDeflater.finished()) {
+                int count = mDeflater.deflate(mBuffer);
+                output.write(mBuffer, 0, count);
+            }
+            writeIntLE(mBuffer, 0, (int) mCrc.getValue());
+            writeIntLE(mBuffer, 4, length);
+            output.write(mBuffer, 0, 8);
+        }
+
+        void end() {
+            mDeflater.end();
+        }
+
+        private static void writeIntLE(@NonNull byte[] buffer, int offset, int value) {
+            buffer[offset] = (byte) value;
+            buffer[offset + 1] = (byte) (value >> 8);
+            buffer[offset + 2] = (byte) (value >> 16);
+            buffer[offset + 3] = (byte) (value >> 24);
+        }
+    }
+}
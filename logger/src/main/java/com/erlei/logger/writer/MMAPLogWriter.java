@@ -5,6 +5,7 @@ import com.erlei.logger.LogLine;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -12,6 +13,8 @@ import java.util.List;
  * Email : erleizh@gmail.com
  * Describe : 使用 mmap技术 将日志写入文件
  * <p>
+ * Messages are encoded into a reusable direct buffer and only its address crosses JNI,
+ * so a line costs neither a byte[] allocation nor a copy of the array by the VM.
  */
 public class MMAPLogWriter extends LogWriter {
 
@@ -19,7 +22,17 @@ public class MMAPLogWriter extends LogWriter {
         System.loadLibrary("mmap-writer");
     }
 
+    private static final int DIRECT_BUFFER_SIZE = 16 * 1024;
+    /**
+     * The max bytes per char in UTF-8, a surrogate pair takes 4 bytes for 2 chars
+     */
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
     private int mPageCount = 5;
+    /**
+     * Guarded by {@link #lock}
+     */
+    private ByteBuffer mDirectBuffer = ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE);
 
     private File file;
     protected long mNativeWriter;
@@ -36,17 +49,30 @@ public class MMAPLogWriter extends LogWriter {
     @Override
     public void write(@NonNull LogLine log) throws IOException {
         synchronized (lock) {
-            write(log.getMessage());
+            encode(log);
+            writeDirect();
+        }
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        synchronized (lock) {
+            encode(str == null ? "null" : str);
+            writeDirect();
         }
     }
 
+    /**
+     * The whole batch crosses JNI once, unless it does not fit into the direct buffer
+     */
     @Override
     public void write(@NonNull List<LogLine> logs) throws IOException {
         if (logs.isEmpty()) return;
         synchronized (lock) {
             for (LogLine log : logs) {
-                write(log);
+                if (log != null) encode(log);
             }
+            writeDirect();
         }
     }
 
@@ -56,15 +82,70 @@ public class MMAPLogWriter extends LogWriter {
 //        return nGetWrittenBytes(mNativeWriter);
     }
 
+    /**
+     * Copied through the direct buffer, a heap array pinned across the write would block the GC
+     * while the native writer remaps its window
+     */
     @Override
     public void write(byte[] buffer, int off, int len) throws IOException {
         synchronized (lock) {
-            mWrittenBytes += len;
-            nWrite(mNativeWriter, buffer, off, len);
+            while (len > 0) {
+                if (!mDirectBuffer.hasRemaining()) writeDirect();
+                int count = Math.min(len, mDirectBuffer.remaining());
+                mDirectBuffer.put(buffer, off, count);
+                off += count;
+                len -= count;
+            }
+            writeDirect();
         }
     }
 
 
+    /**
+     * Appends the bytes of a line its format strategy encoded, otherwise encodes its message
+     */
+    private void encode(@NonNull LogLine log) throws IOException {
+        byte[] encoded = log.getEncodedMessage();
+        if (encoded == null) {
+            encode(log.getMessage());
+            return;
+        }
+        int length = log.getEncodedLength();
+        ByteBuffer buffer = mDirectBuffer;
+        if (length > buffer.remaining()) {
+            writeDirect();
+            if (length > buffer.capacity()) {
+                buffer = mDirectBuffer = ByteBuffer.allocateDirect(Math.max(length, buffer.capacity() * 2));
+            }
+        }
+        buffer.put(encoded, 0, length);
+    }
+
+    /**
+     * Appends the message to the direct buffer, the pending bytes are written first if it does not fit
+     */
+    private void encode(@NonNull String message) throws IOException {
+        ByteBuffer buffer = mDirectBuffer;
+        if (message.length() * MAX_BYTES_PER_CHAR > buffer.remaining()) {
+            int length = Utf8.encodedLength(message);
+            if (length > buffer.remaining()) {
+                writeDirect();
+                if (length > buffer.capacity()) {
+                    buffer = mDirectBuffer = ByteBuffer.allocateDirect(Math.max(length, buffer.capacity() * 2));
+                }
+            }
+        }
+        Utf8.encode(message, buffer);
+    }
+
+    private void writeDirect() throws IOException {
+        int length = mDirectBuffer.position();
+        if (length == 0) return;
+        mDirectBuffer.clear();
+        mWrittenBytes += length;
+        nWriteDirect(mNativeWriter, mDirectBuffer, 0, length);
+    }
+
     /**
      * Didn't do anything
      */
@@ -83,6 +164,9 @@ public class MMAPLogWriter extends LogWriter {
     /**
      * 替换因异常情况导致文件末尾产生的 NUL 字符
      * 已知没有调用close会导致文件末尾产生NUL字符
+     * <p>
+     * The file is cut to its {@link CommittedLength} in O(1), searching for the NUL padding is only
+     * the fallback for files written before the committed length was recorded.
      *
      * @param file        文件
      * @param replacement 要替换NUL的文字
@@ -90,6 +174,7 @@ public class MMAPLogWriter extends LogWriter {
     public static void replaceLastNulChar(@NonNull File file, @NonNull String replacement) {
         if (file.exists() && file.length() > 0) {
             try {
+                if (CommittedLength.trim(file, replacement)) return;
                 nReplaceLastNulChar(file.getAbsolutePath(), replacement);
             } catch (IOException ignored) {
             }
@@ -106,5 +191,7 @@ public class MMAPLogWriter extends LogWriter {
 
     public native void nWrite(long nativeWriter, @NonNull byte[] buffer, int off, int len) throws IOException;
 
+    public native void nWriteDirect(long nativeWriter, @NonNull ByteBuffer buffer, int off, int len) throws IOException;
+
 
 }
@@ -0,0 +1,164 @@
+package com.erlei.logger.writer;
+
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * Describe : 使用 {@link FileChannel#map} 将日志写入文件，不依赖 native 库
+ * <p>
+ * Same semantics as the native MMAPWriter: a window of pageCount pages is mapped at the
+ * page aligned end of the file, when it is full the file is extended and the next window is mapped.
+ * Bytes are copied straight from the caller's array into the mapped buffer.
+ * <p>
+ * The exact length is tracked in {@link #getWrittenBytes()} and in the {@link CommittedLength} file,
+ * {@link #close()} truncates the file to it. If the process dies before close the file keeps a tail
+ * of NUL padding, it is cut to the committed length when the file is opened again.
+ */
+public class MappedLogWriter extends LogWriter {
+
+    public static final int PAGE_SIZE = 4096;
+
+    private final File mFile;
+    private final RandomAccessFile mRandomAccessFile;
+    private final FileChannel mChannel;
+    private final FileLock mFileLock;
+    private final int mWindowSize;
+    /**
+     * The file offset of the current window, always page aligned
+     */
+    private long mWindowPosition;
+    private MappedByteBuffer mBuffer;
+    private CommittedLength mCommittedLength;
+
+    public MappedLogWriter(@NonNull File file, int pageCount) throws IOException {
+        if (pageCount <= 0) pageCount = 5;
+        mFile = file;
+        mWindowSize = PAGE_SIZE * pageCount;
+        mRandomAccessFile = new RandomAccessFile(file, "rw");
+        mChannel = mRandomAccessFile.getChannel();
+        FileLock fileLock = null;
+        try {
+            //加锁，防止同一个文件被多次映射
+            fileLock = mChannel.tryLock();
+        } catch (OverlappingFileLockException ignored) {
+        }
+        if (fileLock == null) {
+            mRandomAccessFile.close();
+            throw new IOException(file + " is already mapped by another writer");
+        }
+        mFileLock = fileLock;
+        try {
+            long committed = CommittedLength.read(file);
+            if (committed >= 0) {
+                mChannel.truncate(committed);
+                mWrittenBytes = committed;
+            } else {
+                mWrittenBytes = trimTrailingNul(mChannel, mWindowSize);
+            }
+            mCommittedLength = new CommittedLength(file, mWrittenBytes);
+            map(mWrittenBytes - mWrittenBytes % PAGE_SIZE);
+            mBuffer.position((int) (mWrittenBytes - mWindowPosition));
+        } catch (IOException e) {
+            if (mCommittedLength != null) mCommittedLength.close();
+            mFileLock.release();
+            mRandomAccessFile.close();
+            throw e;
+        }
+    }
+
+    @NonNull
+    public File getFile() {
+        return mFile;
+    }
+
+    @Override
+    public long getWrittenBytes() {
+        return mWrittenBytes;
+    }
+
+    @Override
+    public void write(byte[] buffer, int off, int len) throws IOException {
+        synchronized (lock) {
+            if (mBuffer == null) throw new IOException("writer is closed");
+            while (len > 0) {
+                if (!mBuffer.hasRemaining()) {
+                    map(mWindowPosition + mWindowSize);
+                }
+                int count = Math.min(len, mBuffer.remaining());
+                mBuffer.put(buffer, off, count);
+                mWrittenBytes += count;
+                off += count;
+                len -= count;
+            }
+            mCommittedLength.set(mWrittenBytes);
+        }
+    }
+
+    /**
+     * Forces the mapped window to the storage device, the data is already visible to readers
+     * of the file without it.
+     */
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            if (mBuffer != null) mBuffer.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (mBuffer == null) return;
+            mBuffer.force();
+            mBuffer = null;
+            try {
+                mChannel.truncate(mWrittenBytes);
+                mCommittedLength.close();
+            } finally {
+                mFileLock.release();
+                mRandomAccessFile.close();
+            }
+        }
+    }
+
+    /**
+     * Maps the window starting at the given page aligned position, the file grows to cover it
+     */
+    private void map(long position) throws IOException {
+        if (mBuffer != null) mBuffer.force();
+        mWindowPosition = position;
+        // the previous window is unmapped when it is garbage collected
+        mBuffer = mChannel.map(FileChannel.MapMode.READ_WRITE, position, mWindowSize);
+    }
+
+    /**
+     * Used when the committed length is unknown, for files written before it was recorded.
+     * The padding left by a writer which was not closed is never larger than one window,
+     * so only the last window of the file is scanned.
+     *
+     * @return the length of the file without the trailing NUL bytes
+     */
+    private static long trimTrailingNul(@NonNull FileChannel channel, int windowSize) throws IOException {
+        long size = channel.size();
+        if (size == 0) return 0;
+        int count = (int) Math.min(size, windowSize);
+        ByteBuffer tail = ByteBuffer.allocate(count);
+        long start = size - count;
+        while (tail.hasRemaining()) {
+            if (channel.read(tail, start + tail.position()) < 0) break;
+        }
+        int end = tail.position();
+        while (end > 0 && tail.get(end - 1) == 0) end--;
+        long length = start + end;
+        if (length < size) channel.truncate(length);
+        return length;
+    }
+}
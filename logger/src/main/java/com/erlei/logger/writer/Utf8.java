@@ -0,0 +1,109 @@
+package com.erlei.logger.writer;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.RestrictTo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describe : 不分配临时 byte[] 的 UTF-8 编码
+ * <p>
+ * {@link String#getBytes} allocates a new array for every line, these methods encode straight into
+ * a reusable buffer. Unpaired surrogates are encoded as '?', the same as {@link String#getBytes}.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * @return the number of bytes needed to encode the given chars
+     */
+    public static int encodedLength(@NonNull CharSequence sequence) {
+        int length = sequence.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = sequence.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(sequence.charAt(i + 1))) {
+                // 4 bytes for 2 chars
+                bytes += 2;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // '?'
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes the chars at the position of the buffer, which must have {@link #encodedLength} bytes remaining.
+     *
+     * @return the number of bytes written
+     */
+    public static int encode(@NonNull CharSequence sequence, @NonNull ByteBuffer buffer) {
+        int length = sequence.length();
+        int i = 0;
+        // ASCII fast path
+        while (i < length) {
+            char c = sequence.charAt(i);
+            if (c >= 0x80) break;
+            buffer.put((byte) c);
+            i++;
+        }
+        return i + encode(sequence, i, buffer);
+    }
+
+    /**
+     * Encodes the chars at the offset of the array, which must have {@link #encodedLength} bytes after it.
+     *
+     * @return the number of bytes written
+     */
+    public static int encode(@NonNull CharSequence sequence, @NonNull byte[] bytes, int offset) {
+        int length = sequence.length();
+        int i = 0;
+        // ASCII fast path, a plain store per char
+        while (i < length) {
+            char c = sequence.charAt(i);
+            if (c >= 0x80) break;
+            bytes[offset + i] = (byte) c;
+            i++;
+        }
+        if (i == length) return length;
+        return i + encode(sequence, i, ByteBuffer.wrap(bytes, offset + i, bytes.length - offset - i));
+    }
+
+    private static int encode(@NonNull CharSequence sequence, int from, @NonNull ByteBuffer buffer) {
+        int start = buffer.position();
+        int length = sequence.length();
+        for (int i = from; i < length; i++) {
+            char c = sequence.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(sequence.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, sequence.charAt(++i));
+                    buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+                } else {
+                    buffer.put((byte) '?');
+                }
+            } else {
+                buffer.put((byte) (0xe0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        return buffer.position() - start;
+    }
+}
@@ -0,0 +1,426 @@
+package com.erlei.logger
+
+import com.erlei.logger.adapter.AsyncLogAdapter
+import com.erlei.logger.adapter.AsyncLogAdapter.OverflowPolicy
+import com.erlei.logger.adapter.DiskLogAdapter
+import com.erlei.logger.adapter.LogAdapter
+import com.erlei.logger.format.JsonFormatStrategy
+import com.erlei.logger.format.TextFormatStrategy
+import com.erlei.logger.printer.DiskPrintStrategy
+import com.erlei.logger.printer.PrintStrategy
+import com.erlei.logger.writer.LogWriter
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AsyncLogAdapterTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  /**
+   * Holds the consumer thread in its first line until [release] is called,
+   * lines logged on any other thread go through at once
+   */
+  private class GateAdapter : LogAdapter {
+    private val gate = CountDownLatch(1)
+    val entered = CountDownLatch(1)
+    val messages: MutableList<String> = Collections.synchronizedList(arrayListOf<String>())
+    val threads: MutableList<String> = Collections.synchronizedList(arrayListOf<String>())
+    @Volatile var flushed = 0
+    @Volatile var closed = false
+
+    override fun isLoggable(logLine: LogLine) = true
+
+    override fun flush() {
+      flushed++
+    }
+
+    override fun close() {
+      closed = true
+    }
+
+    override fun log(logLine: LogLine) {
+      if (Thread.currentThread().name == "AsyncLogAdapter") {
+        entered.countDown()
+        gate.await()
+      }
+      threads.add(Thread.currentThread().name)
+      messages.add(logLine.message)
+      logLine.recycle()
+    }
+
+    fun release() = gate.countDown()
+  }
+
+  private fun line(message: String, level: Int = Logger.INFO) = LogLine.obtain(level, "tag", message)
+
+  /**
+   * The consumer holds "held", "a" and "b" fill the ring of 2
+   */
+  private fun fullAdapter(adapter: GateAdapter, policy: OverflowPolicy): AsyncLogAdapter {
+    val async = AsyncLogAdapter.newBuilder(adapter)
+        .capacity(2)
+        .batchSize(1)
+        .overflowPolicy(policy)
+        .dropLevel(Logger.WARN)
+        .build()
+    async.log(line("held"))
+    assertThat(adapter.entered.await(5, TimeUnit.SECONDS)).isTrue()
+    async.log(line("a"))
+    async.log(line("b"))
+    return async
+  }
+
+  private fun assertDropped(async: AsyncLogAdapter, policy: OverflowPolicy, count: Long) {
+    for (other in OverflowPolicy.values()) {
+      assertThat(async.getDroppedCount(other)).isEqualTo(if (other == policy) count else 0L)
+    }
+  }
+
+  @Test
+  fun dropNewest() {
+    val adapter = GateAdapter()
+    val async = fullAdapter(adapter, OverflowPolicy.DROP_NEWEST)
+
+    async.log(line("c"))
+    assertDropped(async, OverflowPolicy.DROP_NEWEST, 1)
+
+    adapter.release()
+    assertThat(async.close(5000)).isTrue()
+    assertThat(adapter.messages).containsExactly(
+        "held", "a", "1 lines dropped, queue full (DROP_NEWEST)", "b").inOrder()
+  }
+
+  @Test
+  fun dropOldest() {
+    val adapter = GateAdapter()
+    val async = fullAdapter(adapter, OverflowPolicy.DROP_OLDEST)
+
+    async.log(line("c"))
+    async.log(line("d"))
+    assertDropped(async, OverflowPolicy.DROP_OLDEST, 2)
+
+    adapter.release()
+    assertThat(async.close(5000)).isTrue()
+    assertThat(adapter.messages).containsExactly(
+        "held", "c", "2 lines dropped, queue full (DROP_OLDEST)", "d").inOrder()
+  }
+
+  @Test
+  fun dropBelowLevel() {
+    val adapter = GateAdapter()
+    val async = fullAdapter(adapter, OverflowPolicy.DROP_BELOW_LEVEL)
+
+    async.log(line("debug", Logger.DEBUG))
+    assertDropped(async, OverflowPolicy.DROP_BELOW_LEVEL, 1)
+    val producer = Thread { async.log(line("error", Logger.ERROR)) }.apply { start() }
+    producer.join(100)
+    // a line at the drop level waits for a free slot
+    assertThat(producer.isAlive).isTrue()
+
+    adapter.release()
+    producer.join(5000)
+    assertThat(async.close(5000)).isTrue()
+    assertThat(adapter.messages.filter { !it.contains("dropped") })
+        .containsExactly("held", "a", "b", "error").inOrder()
+    assertThat(adapter.messages).contains("1 lines dropped, queue full (DROP_BELOW_LEVEL)")
+    assertDropped(async, OverflowPolicy.DROP_BELOW_LEVEL, 1)
+  }
+
+  @Test
+  fun callerRuns() {
+    val adapter = GateAdapter()
+    val async = fullAdapter(adapter, OverflowPolicy.CALLER_RUNS)
+
+    async.log(line("c"))
+    assertThat(adapter.messages).containsExactly("c")
+    assertThat(adapter.threads).containsExactly(Thread.currentThread().name)
+
+    adapter.release()
+    assertThat(async.close(5000)).isTrue()
+    assertThat(adapter.messages).containsExactly("c", "held", "a", "b").inOrder()
+    assertDropped(async, OverflowPolicy.CALLER_RUNS, 0)
+  }
+
+  @Test
+  fun block() {
+    val adapter = GateAdapter()
+    val async = fullAdapter(adapter, OverflowPolicy.BLOCK)
+
+    val producer = Thread { async.log(line("c", Logger.VERBOSE)) }.apply { start() }
+    producer.join(100)
+    assertThat(producer.isAlive).isTrue()
+
+    adapter.release()
+    producer.join(5000)
+    assertThat(async.close(5000)).isTrue()
+    assertThat(adapter.messages).containsExactly("held", "a", "b", "c").inOrder()
+    assertDropped(async, OverflowPolicy.BLOCK, 0)
+  }
+
+  /**
+   * Records the size of each batch, the first batch holds the consumer until [release] is called
+   */
+  private class BatchAdapter : LogAdapter {
+    private val gate = CountDownLatch(1)
+    val entered = CountDownLatch(1)
+    val batches: MutableList<Int> = Collections.synchronizedList(arrayListOf<Int>())
+
+    override fun isLoggable(logLine: LogLine) = true
+
+    override fun log(logLine: LogLine) {
+      log(listOf(logLine))
+    }
+
+    override fun log(logLines: List<LogLine>) {
+      entered.countDown()
+      gate.await()
+      batches.add(logLines.size)
+      logLines.forEach { it.recycle() }
+    }
+
+    fun release() = gate.countDown()
+  }
+
+  @Test
+  fun batchSizeBoundsEachBatch() {
+    val adapter = BatchAdapter()
+    val async = AsyncLogAdapter.newBuilder(adapter).capacity(16).batchSize(4).build()
+    async.log(line("held"))
+    assertThat(adapter.entered.await(5, TimeUnit.SECONDS)).isTrue()
+    for (i in 0 until 10) async.log(line("line $i"))
+
+    adapter.release()
+    assertThat(async.close(5000)).isTrue()
+    assertThat(adapter.batches).containsExactly(1, 4, 4, 2).inOrder()
+  }
+
+  @Test
+  fun maxBatchDelayWaitsForTheBatchToFill() {
+    val waiting = BatchAdapter().apply { release() }
+    val async = AsyncLogAdapter.newBuilder(waiting).batchSize(5).maxBatchDelay(5000).build()
+    for (i in 0 until 5) {
+      async.log(line("line $i"))
+      Thread.sleep(20)
+    }
+    assertThat(async.close(5000)).isTrue()
+    assertThat(waiting.batches).containsExactly(5)
+
+    val eager = BatchAdapter().apply { release() }
+    val noDelay = AsyncLogAdapter.newBuilder(eager).batchSize(5).build()
+    for (i in 0 until 5) {
+      noDelay.log(line("line $i"))
+      Thread.sleep(20)
+    }
+    assertThat(noDelay.close(5000)).isTrue()
+    assertThat(eager.batches.size).isGreaterThan(1)
+  }
+
+  private class RecordingWriter : LogWriter() {
+    val batches: MutableList<List<String>> = Collections.synchronizedList(arrayListOf<List<String>>())
+    val writes: MutableList<String> = Collections.synchronizedList(arrayListOf<String>())
+
+    override fun write(logs: List<LogLine>) {
+      batches.add(logs.map { it.message })
+    }
+
+    override fun write(buffer: ByteArray, off: Int, len: Int) {
+      writes.add(String(buffer, off, len, Charsets.UTF_8))
+    }
+
+    override fun getWrittenBytes() = 0L
+
+    override fun flush() {
+    }
+
+    override fun close() {
+    }
+  }
+
+  @Test
+  fun drainedBatchReachesTheWriterInOneCall() {
+    val writer = RecordingWriter()
+    val file = File(folder.root, "a.log")
+    val print = DiskPrintStrategy.newBuilder()
+        .fileProvider { _, _ -> file }
+        .writerFactory { writer }
+        .build()
+    val disk = DiskLogAdapter(TextFormatStrategy.newBuilder().logStrategy(print).build())
+    val async = AsyncLogAdapter.newBuilder(disk).batchSize(8).maxBatchDelay(5000).build()
+
+    for (i in 0 until 8) async.log(line("line $i"))
+    assertThat(async.close(5000)).isTrue()
+
+    assertThat(writer.writes).isEmpty()
+    assertThat(writer.batches).hasSize(1)
+    assertThat(writer.batches.single()).hasSize(8)
+    assertThat(writer.batches.single().last()).endsWith(",INFO,tag,line 7" + System.lineSeparator())
+  }
+
+  @Test
+  fun flushWaitsForQueuedLines() {
+    val adapter = GateAdapter()
+    val async = AsyncLogAdapter.newBuilder(adapter).build()
+    async.log(line("held"))
+    assertThat(adapter.entered.await(5, TimeUnit.SECONDS)).isTrue()
+    async.log(line("a"))
+
+    assertThat(async.flush(100)).isFalse()
+    assertThat(adapter.flushed).isEqualTo(1)
+
+    adapter.release()
+    assertThat(async.flush(5000)).isTrue()
+    assertThat(adapter.messages).containsExactly("held", "a").inOrder()
+    assertThat(adapter.flushed).isEqualTo(2)
+    assertThat(adapter.closed).isFalse()
+    async.close()
+  }
+
+  @Test
+  fun closeDrainsTheQueueAndClosesTheAdapter() {
+    val adapter = GateAdapter().apply { release() }
+    val async = AsyncLogAdapter.newBuilder(adapter).build()
+    for (i in 0 until 100) async.log(line("line $i"))
+
+    assertThat(async.close(5000)).isTrue()
+    assertThat(adapter.closed).isTrue()
+    assertThat(adapter.messages).hasSize(100)
+
+    async.log(line("after close"))
+    assertThat(adapter.messages).hasSize(100)
+  }
+
+  @Test
+  fun closeTimesOutAndReleasesBlockedProducers() {
+    val adapter = GateAdapter()
+    val async = fullAdapter(adapter, OverflowPolicy.BLOCK)
+    val producer = Thread { async.log(line("c")) }.apply { start() }
+    producer.join(50)
+    assertThat(producer.isAlive).isTrue()
+
+    assertThat(async.close(100)).isFalse()
+    assertThat(adapter.closed).isTrue()
+    // the queue is closed, the producer gives up its line instead of waiting forever
+    producer.join(1000)
+    assertThat(producer.isAlive).isFalse()
+
+    adapter.release()
+    assertThat(adapter.messages.size).isAtMost(3)
+    assertThat(adapter.messages).doesNotContain("c")
+  }
+
+  @Test
+  fun crashHandlerWritesTheQueueSynchronously() {
+    val previous = Thread.getDefaultUncaughtExceptionHandler()
+    val crashes = arrayListOf<Throwable>()
+    Thread.setDefaultUncaughtExceptionHandler { _, e -> crashes.add(e) }
+    try {
+      val adapter = GateAdapter()
+      val async = AsyncLogAdapter.newBuilder(adapter).capacity(2).batchSize(1).drainOnCrash(true).build()
+      async.log(line("held"))
+      assertThat(adapter.entered.await(5, TimeUnit.SECONDS)).isTrue()
+      async.log(line("a"))
+      async.log(line("b"))
+
+      val boom = RuntimeException("boom")
+      Thread({ throw boom }, "crasher").apply { start() }.join(5000)
+
+      // the consumer is still held, the crashing thread wrote the queue and the crash itself
+      assertThat(adapter.messages.take(2)).containsExactly("a", "b").inOrder()
+      assertThat(adapter.messages[2]).startsWith("Uncaught exception in thread crasher")
+      assertThat(adapter.threads.toSet()).containsExactly("crasher")
+      assertThat(adapter.closed).isTrue()
+      // then the previous handler gets the crash
+      assertThat(crashes).containsExactly(boom)
+      adapter.release()
+    } finally {
+      Thread.setDefaultUncaughtExceptionHandler(previous)
+    }
+  }
+
+  @Test
+  fun failedBatchIsRecycled() {
+    val print = DiskPrintStrategy.newBuilder()
+        .fileProvider { _, _ -> File(folder.root, "a.log") }
+        .writerFactory { RecordingWriter() }
+        .build()
+    val disk = DiskLogAdapter(TextFormatStrategy.newBuilder().logStrategy(print).build())
+    val async = AsyncLogAdapter.newBuilder(disk).batchSize(3).maxBatchDelay(5000).build()
+    val broken = LogLine.obtain(Logger.INFO, "tag").apply {
+      setFormat("%s")
+      setArgs(arrayOf<Any?>(object : Any() {
+        override fun toString(): String = throw IllegalStateException("broken arg")
+      }))
+    }
+    // one reference for the pipeline and one for the test
+    val lines = listOf(line("a"), broken, line("c")).onEach { it.retain() }
+    LoggerFactory.checkRecycle(true)
+    try {
+      lines.forEach { async.log(it) }
+      assertThat(async.close(5000)).isTrue()
+      for (logLine in lines) {
+        logLine.recycle()
+        // the pipeline released its reference, the line is back in the pool
+        try {
+          logLine.recycle()
+          throw AssertionError("the pipeline did not recycle a line of the failed batch")
+        } catch (expected: IllegalStateException) {
+        }
+      }
+    } finally {
+      LoggerFactory.checkRecycle(false)
+    }
+  }
+
+  @Test
+  fun jsonAdapterLeavesTheLineToAsyncAdapters() {
+    for (jsonFirst in listOf(true, false)) {
+      // like the default serializer, the throwable is taken out of the message
+      val json = arrayListOf<String>()
+      val jsonAdapter = DiskLogAdapter(JsonFormatStrategy.newBuilder()
+          .serializer { logLine ->
+            val throwable = logLine.throwable
+            logLine.setThrowable(null)
+            "${throwable?.message} ${logLine.peekExtra()} ${logLine.message}"
+          }
+          .logStrategy(PrintStrategy { logLine ->
+            json.add(logLine.message)
+            logLine.recycle()
+          })
+          .build())
+      // the text adapter renders once the json adapter is done with the line
+      val logged = CountDownLatch(1)
+      val text: MutableList<String> = Collections.synchronizedList(arrayListOf<String>())
+      val textAdapter = DiskLogAdapter(TextFormatStrategy.newBuilder()
+          .logStrategy(PrintStrategy { logLine ->
+            logged.await()
+            text.add("${logLine.throwable?.message} ${logLine.peekExtra()} ${logLine.message}")
+            logLine.recycle()
+          })
+          .build())
+      val async = AsyncLogAdapter.newBuilder(textAdapter).build()
+      val printer = LoggerPrinter()
+      if (jsonFirst) printer.addAdapter(jsonAdapter)
+      printer.addAdapter(async)
+      if (!jsonFirst) printer.addAdapter(jsonAdapter)
+
+      val line = LogLine.obtain(Logger.ERROR, "tag", "failed", IllegalStateException("boom"))
+      line.extra["user"] = "42"
+      printer.log(line)
+      logged.countDown()
+      assertThat(async.close(5000)).isTrue()
+
+      assertThat(json).containsExactly("boom {user=42} failed")
+      assertThat(text).hasSize(1)
+      // the message keeps the throwable the json adapter took out of its own
+      assertThat(text.single()).startsWith("boom {user=42} ")
+      assertThat(text.single()).contains(",ERROR,tag,failed : ")
+    }
+  }
+}
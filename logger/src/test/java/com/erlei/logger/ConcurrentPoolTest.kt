@@ -0,0 +1,87 @@
+package com.erlei.logger
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Assert.fail
+import org.junit.Test
+import java.util.Collections
+import java.util.IdentityHashMap
+import kotlin.concurrent.thread
+
+class ConcurrentPoolTest {
+
+  @After
+  fun tearDown() {
+    Pools.setCheckRelease(false)
+  }
+
+  @Test
+  fun releasedInstancesAreAcquiredAgain() {
+    val pool = Pools.ConcurrentPool<Any>(2)
+    val instances = List(20) { Any() }
+    // 8 kept by the thread, 2 shared, the rest dropped
+    val released = instances.count { pool.release(it) }
+    assertThat(released).isEqualTo(10)
+
+    val acquired = Collections.newSetFromMap(IdentityHashMap<Any, Boolean>())
+    while (true) acquired.add(pool.acquire() ?: break)
+    assertThat(acquired).hasSize(10)
+    assertThat(pool.hitCount).isEqualTo(10L)
+    assertThat(pool.missCount).isEqualTo(1L)
+  }
+
+  @Test
+  fun instancesReleasedOnAnotherThreadAreShared() {
+    val pool = Pools.ConcurrentPool<Any>(16)
+    thread { repeat(24) { pool.release(Any()) } }.join()
+    var count = 0
+    while (pool.acquire() != null) count++
+    assertThat(count).isEqualTo(16)
+  }
+
+  @Test
+  fun doubleReleaseIsDetected() {
+    Pools.setCheckRelease(true)
+    val pool = Pools.ConcurrentPool<Any>(4)
+    val instance = Any()
+    pool.release(instance)
+    try {
+      pool.release(instance)
+      fail()
+    } catch (expected: IllegalStateException) {
+    }
+    assertThat(pool.acquire()).isSameAs(instance)
+    assertThat(pool.release(instance)).isTrue()
+  }
+
+  @Test
+  fun countsOfAllThreadsAreAddedUp() {
+    val pool = Pools.ConcurrentPool<Any>(4)
+    val threads = List(4) {
+      thread {
+        repeat(3) { pool.release(Any()) }
+        repeat(5) { pool.acquire() }
+      }
+    }
+    threads.forEach { it.join() }
+    pool.acquire()
+    // the threads are dead, their counts are kept
+    assertThat(pool.hitCount).isEqualTo(12L)
+    assertThat(pool.missCount).isEqualTo(9L)
+    pool.acquire()
+    assertThat(pool.missCount).isEqualTo(10L)
+  }
+
+  @Test
+  fun switchingTheCheckForgetsTrackedInstances() {
+    val pool = Pools.ConcurrentPool<Any>(4)
+    val instance = Any()
+    Pools.setCheckRelease(true)
+    pool.release(instance)
+    Pools.setCheckRelease(false)
+    assertThat(pool.acquire()).isSameAs(instance)
+    Pools.setCheckRelease(true)
+    // acquired while the check was off, releasing it once is fine
+    assertThat(pool.release(instance)).isTrue()
+  }
+}
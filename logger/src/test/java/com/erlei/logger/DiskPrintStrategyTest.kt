@@ -0,0 +1,79 @@
+package com.erlei.logger
+
+import com.erlei.logger.adapter.DiskLogAdapter
+import com.erlei.logger.format.TextFormatStrategy
+import com.erlei.logger.printer.DiskPrintStrategy
+import com.erlei.logger.writer.FileLogWriter
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.IOException
+
+class DiskPrintStrategyTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  @Test
+  fun linesPrintedAfterCloseAreNotWritten() {
+    val file = folder.newFile("a.log")
+    val print = DiskPrintStrategy.newBuilder()
+        .fileProvider { _, _ -> file }
+        .writerFactory { FileLogWriter(it) }
+        .build()
+    val adapter = DiskLogAdapter(TextFormatStrategy.newBuilder().logStrategy(print).build())
+
+    adapter.log(LogLine.obtain(Logger.INFO, "tag", "before"))
+    adapter.close()
+    val length = file.length()
+    adapter.log(LogLine.obtain(Logger.INFO, "tag", "after"))
+    print.flush()
+
+    assertThat(file.length()).isEqualTo(length)
+    assertThat(file.readText()).contains("before")
+    assertThat(file.readText()).doesNotContain("after")
+  }
+
+  @Test
+  fun fileWriterAppendsToAnExistingFile() {
+    val file = folder.newFile("b.log")
+    file.writeText("first\n")
+
+    val writer = FileLogWriter(file)
+    assertThat(writer.writtenBytes).isEqualTo(6L)
+    writer.write("second\n")
+    writer.close()
+
+    assertThat(file.readText()).isEqualTo("first\nsecond\n")
+  }
+
+  @Test
+  fun linesAreDroppedWhileTheFileCannotBeOpened() {
+    val file = folder.newFile("c.log")
+    var failures = 1
+    val print = DiskPrintStrategy.newBuilder()
+        .fileProvider { _, _ -> file }
+        .writerFactory {
+          if (failures-- > 0) throw IOException("No space left on device")
+          FileLogWriter(it)
+        }
+        .build()
+    val adapter = DiskLogAdapter(TextFormatStrategy.newBuilder().logStrategy(print).build())
+
+    LoggerFactory.checkRecycle(true)
+    try {
+      val dropped = LogLine.obtain(Logger.INFO, "tag", "dropped").retain()
+      adapter.log(dropped)
+      // the print strategy released its reference
+      dropped.recycle()
+      adapter.log(LogLine.obtain(Logger.INFO, "tag", "written"))
+      adapter.close()
+    } finally {
+      LoggerFactory.checkRecycle(false)
+    }
+
+    assertThat(file.readText()).contains("written")
+    assertThat(file.readText()).doesNotContain("dropped")
+  }
+}
@@ -0,0 +1,212 @@
+package com.erlei.logger
+
+import com.erlei.logger.adapter.LogAdapter
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+class LoggerPrinterTest {
+
+  private class CapturingAdapter : LogAdapter {
+    val messages = arrayListOf<String>()
+    val args = arrayListOf<List<Any?>>()
+
+    override fun isLoggable(logLine: LogLine) = true
+
+    override fun log(logLine: LogLine) {
+      messages.add(logLine.message)
+      args.add(logLine.args!!.toList())
+    }
+  }
+
+  @Test
+  fun fixedArityArgsAreBoxedLikeVarargs() {
+    val printer = LoggerPrinter()
+    val adapter = CapturingAdapter()
+    printer.addAdapter(adapter)
+
+    printer.d("%x", -1)
+    printer.i("%d", 5L)
+    printer.w("%s", 0.1f)
+    printer.e("%.2f", 1.005)
+    printer.v("%s", 'c')
+    printer.wtf("%s %s", "a", null)
+
+    assertThat(adapter.messages)
+        .containsExactly("ffffffff", "5", "0.1", "1.01", "c", "a null").inOrder()
+    assertThat(adapter.args.map { list -> list.map { it?.javaClass } })
+        .containsExactly(
+            listOf(Integer::class.java),
+            listOf(java.lang.Long::class.java),
+            listOf(java.lang.Float::class.java),
+            listOf(java.lang.Double::class.java),
+            listOf(Character::class.java),
+            listOf(String::class.java, null)
+        ).inOrder()
+  }
+
+  @Test
+  fun fixedArityArgsAreSharedWithViews() {
+    val printer = LoggerPrinter()
+    val first = CapturingAdapter()
+    val second = CapturingAdapter()
+    printer.addAdapter(first)
+    printer.addAdapter(second)
+
+    printer.d("%d", 42)
+
+    assertThat(first.messages).containsExactly("42")
+    assertThat(second.messages).containsExactly("42")
+  }
+
+  private class FormattingAdapter(private val name: String) : LogAdapter {
+    val lines = arrayListOf<LogLine>()
+
+    override fun isLoggable(logLine: LogLine) = true
+
+    override fun log(logLine: LogLine) {
+      logLine.setModuleName(name)
+      logLine.message = "${logLine.fulTag}: ${logLine.message}"
+      lines.add(logLine)
+    }
+  }
+
+  @Test
+  fun everyAdapterFormatsTheLineAsLogged() {
+    val printer = LoggerPrinter()
+    val first = FormattingAdapter("first")
+    val second = FormattingAdapter("second")
+    printer.addAdapter(first)
+    printer.addAdapter(second)
+
+    printer.t("tag").d("%d items", 3)
+
+    assertThat(first.lines.single().message).isEqualTo("first-tag: 3 items")
+    assertThat(second.lines.single().message).isEqualTo("second-tag: 3 items")
+    // the view keeps the line out of the pool
+    second.lines.single().recycle()
+    assertThat(first.lines.single().message).isEqualTo("first-tag: 3 items")
+    assertThat(first.lines.single().args).asList().containsExactly(3)
+    first.lines.single().recycle()
+  }
+
+  @Test(expected = IllegalStateException::class)
+  fun recycleTwiceThrows() {
+    LoggerFactory.checkRecycle(true)
+    try {
+      val line = LogLine.obtain(Logger.DEBUG, "tag").retain()
+      line.recycle()
+      line.recycle()
+      line.recycle()
+    } finally {
+      LoggerFactory.checkRecycle(false)
+    }
+  }
+
+  @Test
+  fun recycleTwiceIsIgnoredWithoutCheck() {
+    val line = LogLine.obtain(Logger.DEBUG, "tag")
+    line.recycle()
+    line.recycle()
+    // the pool holds the line once
+    val first = LogLine.obtain(Logger.DEBUG, "tag")
+    val second = LogLine.obtain(Logger.DEBUG, "tag")
+    assertThat(first).isNotSameAs(second)
+    first.recycle()
+    second.recycle()
+  }
+
+  @Test
+  fun linesBelowEveryAdapterAreDroppedBeforeObtain() {
+    val printer = LoggerPrinter()
+    assertThat(printer.isLoggable(Logger.ASSERT)).isFalse()
+
+    val adapter = object : LogAdapter {
+      val messages = arrayListOf<String>()
+
+      override fun getMinLevel() = Logger.WARN
+
+      override fun isLoggable(level: Int, tag: String?) = level >= getMinLevel() && tag != "muted"
+
+      override fun isLoggable(logLine: LogLine) = true
+
+      override fun log(logLine: LogLine) {
+        messages.add("${logLine.tag}:${logLine.message}")
+      }
+    }
+    printer.addAdapter(adapter)
+    assertThat(printer.isLoggable(Logger.INFO)).isFalse()
+    assertThat(printer.isLoggable(Logger.WARN)).isTrue()
+
+    printer.t("dropped").d("debug")
+    printer.w("warn")
+    printer.t("muted").e("error")
+    printer.t("kept").e("error")
+
+    // the tag of a dropped line is not left for the next one
+    assertThat(adapter.messages).containsExactly("null:warn", "kept:error").inOrder()
+
+    printer.clearLogAdapters()
+    assertThat(printer.isLoggable(Logger.ASSERT)).isFalse()
+  }
+
+  private class SequenceAdapter : LogAdapter {
+    val sequences = java.util.concurrent.ConcurrentHashMap<String, MutableList<Long>>()
+    val inside = AtomicInteger()
+    val maxInside = AtomicInteger()
+
+    override fun isLoggable(logLine: LogLine) = true
+
+    override fun log(logLine: LogLine) {
+      maxInside.accumulateAndGet(inside.incrementAndGet()) { a, b -> maxOf(a, b) }
+      sequences.computeIfAbsent(logLine.tag) { java.util.Collections.synchronizedList(arrayListOf()) }
+          .add(logLine.sequence)
+      Thread.yield()
+      inside.decrementAndGet()
+      logLine.recycle()
+    }
+  }
+
+  private fun logFromThreads(printer: LoggerPrinter, threads: Int, lines: Int) {
+    val start = CountDownLatch(1)
+    val workers = (0 until threads).map { thread ->
+      Thread {
+        start.await()
+        for (i in 0 until lines) printer.t("thread$thread").i("line %d", i)
+      }.apply { start() }
+    }
+    start.countDown()
+    workers.forEach { it.join() }
+  }
+
+  @Test
+  fun concurrentDispatchNumbersLinesInCallingOrder() {
+    val printer = LoggerPrinter()
+    printer.setConcurrentDispatch(true)
+    val adapter = SequenceAdapter()
+    printer.addAdapter(adapter)
+
+    logFromThreads(printer, 4, 2000)
+
+    assertThat(adapter.sequences.keys).hasSize(4)
+    val all = adapter.sequences.values.flatten()
+    assertThat(all).hasSize(8000)
+    assertThat(all.toSet()).hasSize(8000)
+    for (sequences in adapter.sequences.values) {
+      assertThat(sequences).isEqualTo(sequences.sorted())
+    }
+  }
+
+  @Test
+  fun dispatchIsSerializedByDefault() {
+    val printer = LoggerPrinter()
+    val adapter = SequenceAdapter()
+    printer.addAdapter(adapter)
+
+    logFromThreads(printer, 4, 500)
+
+    assertThat(adapter.maxInside.get()).isEqualTo(1)
+    assertThat(adapter.sequences.values.flatten().sorted()).isEqualTo((1L..2000L).toList())
+  }
+}
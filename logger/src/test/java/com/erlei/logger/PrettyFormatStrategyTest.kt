@@ -176,6 +176,19 @@ class PrettyFormatStrategyTest {
         .hasNoMoreMessages()
   }
 
+  @Test(expected = IllegalStateException::class)
+  fun recyclesTheLine() {
+    val formatStrategy = builder.build()
+    LoggerFactory.checkRecycle(true)
+    try {
+      val line = LogLine.obtain(DEBUG, null, "message")
+      formatStrategy.log(line)
+      line.recycle()
+    } finally {
+      LoggerFactory.checkRecycle(false)
+    }
+  }
+
   private class MockPrintStrategy : PrintStrategy {
     override fun print(logLine: LogLine) {
       logItems.add(LogAssert.LogItem(logLine.level, logLine.fulTag, logLine.message))
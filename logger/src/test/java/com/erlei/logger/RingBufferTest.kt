@@ -0,0 +1,115 @@
+package com.erlei.logger
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class RingBufferTest {
+
+  @Test
+  fun capacityIsPowerOfTwo() {
+    assertThat(RingBuffer<String>(100).capacity()).isEqualTo(128)
+    assertThat(RingBuffer<String>(128).capacity()).isEqualTo(128)
+    assertThat(RingBuffer<String>(1).capacity()).isEqualTo(1)
+  }
+
+  @Test
+  fun offerFailsWhenFull() {
+    val buffer = RingBuffer<String>(2)
+    assertThat(buffer.offer("a")).isTrue()
+    assertThat(buffer.offer("b")).isTrue()
+    assertThat(buffer.offer("c")).isFalse()
+    assertThat(buffer.size()).isEqualTo(2)
+
+    assertThat(buffer.poll()).isEqualTo("a")
+    assertThat(buffer.offer("c")).isTrue()
+    assertThat(buffer.poll()).isEqualTo("b")
+    assertThat(buffer.poll()).isEqualTo("c")
+    assertThat(buffer.poll()).isNull()
+    assertThat(buffer.isEmpty).isTrue()
+  }
+
+  @Test
+  fun drainTo() {
+    val buffer = RingBuffer<Int>(8)
+    for (i in 0 until 5) buffer.offer(i)
+    val list = arrayListOf<Int>()
+    assertThat(buffer.drainTo(list, 3)).isEqualTo(3)
+    assertThat(list).containsExactly(0, 1, 2).inOrder()
+    assertThat(buffer.drainTo(list, 10)).isEqualTo(2)
+    assertThat(list).containsExactly(0, 1, 2, 3, 4).inOrder()
+  }
+
+  @Test
+  fun evictOldestFromAnotherThread() {
+    val buffer = RingBuffer<Int>(4)
+    for (i in 0 until 4) buffer.offer(i)
+    val producer = Thread {
+      var i = 4
+      while (i < 8) {
+        if (buffer.offer(i)) i++ else buffer.poll()
+      }
+    }
+    producer.start()
+    producer.join()
+    val list = arrayListOf<Int>()
+    buffer.drainTo(list, 10)
+    assertThat(list).containsExactly(4, 5, 6, 7).inOrder()
+  }
+
+  @Test
+  fun keepsOrderPerProducer() {
+    val buffer = RingBuffer<IntArray>(16)
+    val producers = 4
+    val count = 10000
+    val threads = (0 until producers).map { id ->
+      Thread { for (i in 0 until count) buffer.put(intArrayOf(id, i)) }.apply { start() }
+    }
+    val last = IntArray(producers) { -1 }
+    repeat(producers * count) {
+      val element = buffer.take()!!
+      assertThat(element[1]).isEqualTo(last[element[0]] + 1)
+      last[element[0]] = element[1]
+    }
+    threads.forEach { it.join() }
+    assertThat(buffer.poll()).isNull()
+  }
+
+  @Test
+  fun takeReturnsNullOnceClosedAndEmpty() {
+    val buffer = RingBuffer<Int>(4)
+    buffer.offer(1)
+    buffer.close()
+    assertThat(buffer.take()).isEqualTo(1)
+    assertThat(buffer.take()).isNull()
+  }
+
+  @Test
+  fun closeWakesUpWaitingConsumer() {
+    val buffer = RingBuffer<Int>(4)
+    var result: Int? = 0
+    val consumer = Thread { result = buffer.take() }.apply { start() }
+    Thread.sleep(50)
+    buffer.close()
+    consumer.join(1000)
+    assertThat(consumer.isAlive).isFalse()
+    assertThat(result).isNull()
+  }
+
+  @Test
+  fun offerAndPutFailOnceClosed() {
+    val buffer = RingBuffer<Int>(1)
+    buffer.offer(1)
+    var put: Boolean? = null
+    val producer = Thread { put = buffer.put(2) }.apply { start() }
+    producer.join(50)
+    assertThat(producer.isAlive).isTrue()
+
+    buffer.close()
+    producer.join(1000)
+    assertThat(producer.isAlive).isFalse()
+    assertThat(put).isEqualTo(false)
+    assertThat(buffer.poll()).isEqualTo(1)
+    assertThat(buffer.offer(3)).isFalse()
+    assertThat(buffer.poll()).isNull()
+  }
+}
@@ -0,0 +1,63 @@
+package com.erlei.logger.format
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.util.Random
+
+class MessageTemplateTest {
+
+  private fun assertSameAsStringFormat(format: String, vararg args: Any?) {
+    val expected = runCatching { String.format(format, *args) }
+    val actual = runCatching { MessageTemplate.format(format, *args) }
+    if (expected.isSuccess) {
+      assertThat(actual.getOrNull()).isEqualTo(expected.getOrNull())
+    } else {
+      assertThat(actual.exceptionOrNull()).isInstanceOf(expected.exceptionOrNull()!!.javaClass)
+    }
+  }
+
+  @Test
+  fun fastPaths() {
+    val random = Random(1)
+    repeat(10000) {
+      val double = (random.nextDouble() - 0.5) * Math.pow(10.0, random.nextInt(30) - 15.0)
+      val long = random.nextLong() shr random.nextInt(64)
+      assertSameAsStringFormat("%f", double)
+      assertSameAsStringFormat("%.2f", double)
+      assertSameAsStringFormat("%.0f", double)
+      assertSameAsStringFormat("%.3f", double.toFloat())
+      assertSameAsStringFormat("%d", long)
+      assertSameAsStringFormat("%d", long.toInt())
+      assertSameAsStringFormat("a %s b %d c %.1f %%", "s", long.toShort(), double)
+    }
+    assertSameAsStringFormat("%.2f", -0.0)
+    assertSameAsStringFormat("%.2f", -0.001)
+    assertSameAsStringFormat("%f", Double.NaN)
+    assertSameAsStringFormat("%s %s", null, listOf(1, 2))
+  }
+
+  @Test
+  fun otherSpecifiers() {
+    assertSameAsStringFormat("%5s|%-5d|%x|%08.3f", "a", 1, -1, 1.5)
+    assertSameAsStringFormat("%n%s%n", "a")
+    assertSameAsStringFormat("x%5%y %s", "a")
+    assertSameAsStringFormat("%1\$s %1\$s %<s", "a")
+    assertSameAsStringFormat("%b %c %o %e %g %a", true, 'c', 8, 1.0, 2.0, 3.0)
+    assertSameAsStringFormat("%tY", System.currentTimeMillis())
+  }
+
+  @Test
+  fun errors() {
+    assertSameAsStringFormat("%s %s", "a")
+    assertSameAsStringFormat("%d", "a")
+    assertSameAsStringFormat("%q", "a")
+    assertSameAsStringFormat("%", "a")
+    assertSameAsStringFormat("%f", 3)
+  }
+
+  @Test
+  fun cachesByIdentity() {
+    val format = "cached %s"
+    assertThat(MessageTemplate.compile(format)).isSameAs(MessageTemplate.compile(format))
+  }
+}
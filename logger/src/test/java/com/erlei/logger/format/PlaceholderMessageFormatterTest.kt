@@ -0,0 +1,46 @@
+package com.erlei.logger.format
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class PlaceholderMessageFormatterTest {
+
+  private val formatter = PlaceholderMessageFormatter()
+
+  @Test
+  fun replacesPlaceholdersInOrder() {
+    assertThat(formatter.format("a {} b {} c", 1, "x")).isEqualTo("a 1 b x c")
+    assertThat(formatter.format("a {} b {} c {}", 1)).isEqualTo("a 1 b {} c {}")
+    assertThat(formatter.format("no placeholder", 1)).isEqualTo("no placeholder")
+    assertThat(formatter.format("{}{}", null, "b")).isEqualTo("nullb")
+  }
+
+  @Test
+  fun escapes() {
+    assertThat(formatter.format("esc \\{} and {}", 1)).isEqualTo("esc {} and 1")
+    assertThat(formatter.format("dbl \\\\{} and {}", 1, 2)).isEqualTo("dbl \\1 and 2")
+  }
+
+  @Test
+  fun arrays() {
+    assertThat(formatter.format("{} {}", intArrayOf(1, 2), arrayOf("a", longArrayOf(3))))
+        .isEqualTo("[1, 2] [a, [3]]")
+  }
+
+  @Test
+  fun trailingThrowable() {
+    val exception = RuntimeException("boom")
+    assertThat(formatter.getThrowable("upload {} failed", "f", exception)).isSameAs(exception)
+    assertThat(formatter.getThrowable("upload {} failed", exception)).isNull()
+    assertThat(formatter.getThrowable("upload {} failed {}", "f", exception)).isNull()
+    assertThat(formatter.format("upload {} failed", "f", exception)).isEqualTo("upload f failed")
+  }
+
+  @Test
+  fun argWhichFormatsInItsToString() {
+    val arg = object {
+      override fun toString() = formatter.format("inner {}", 7)
+    }
+    assertThat(formatter.format("outer {} end", arg)).isEqualTo("outer inner 7 end")
+  }
+}
@@ -0,0 +1,76 @@
+package com.erlei.logger.format
+
+import com.erlei.logger.LogLine
+import com.erlei.logger.LoggerPrinter
+import com.erlei.logger.adapter.AndroidLogAdapter
+import com.erlei.logger.printer.PrintStrategy
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class TextFormatStrategyTest {
+
+  private class CapturingPrintStrategy : PrintStrategy {
+    val messages = arrayListOf<String>()
+    val encoded = arrayListOf<String?>()
+
+    override fun print(logLine: LogLine) {
+      encoded.add(logLine.encodedMessage?.let { String(it, 0, logLine.encodedLength, Charsets.UTF_8) })
+      messages.add(logLine.message)
+      logLine.recycle()
+    }
+  }
+
+  private fun strategy(print: PrintStrategy, tag: String = "") =
+      TextFormatStrategy.newBuilder().tag(tag).logStrategy(print).build()
+
+  @Test
+  fun equalSettingsHaveEqualKeys() {
+    val print = CapturingPrintStrategy()
+    assertThat(strategy(print).formatKey).isEqualTo(strategy(print).formatKey)
+    assertThat(strategy(print).formatKey).isNotEqualTo(strategy(print, "module").formatKey)
+  }
+
+  @Test
+  fun adaptersWithEqualKeysShareTheMessage() {
+    val first = CapturingPrintStrategy()
+    val second = CapturingPrintStrategy()
+    val other = CapturingPrintStrategy()
+    val printer = LoggerPrinter()
+    printer.addAdapter(AndroidLogAdapter(strategy(first)))
+    printer.addAdapter(AndroidLogAdapter(strategy(other, "module")))
+    printer.addAdapter(AndroidLogAdapter(strategy(second)))
+
+    printer.t("tag").i("%d items", 3)
+
+    assertThat(first.messages.single()).endsWith(",INFO,tag,3 items" + System.lineSeparator())
+    assertThat(second.messages.single()).isEqualTo(first.messages.single())
+    assertThat(second.encoded.single()).isEqualTo(first.messages.single())
+    assertThat(other.messages.single()).contains(",INFO,module-tag,3 items")
+  }
+
+  @Test
+  fun messageIsEncodedToUtf8() {
+    val print = CapturingPrintStrategy()
+    strategy(print).log(LogLine.obtain(com.erlei.logger.Logger.INFO, "tag", "é 中文 😀"))
+    assertThat(print.encoded.single()).isEqualTo(print.messages.single())
+    assertThat(print.messages.single()).endsWith(",INFO,tag,é 中文 😀" + System.lineSeparator())
+  }
+
+  @Test
+  fun customSeparator() {
+    val print = CapturingPrintStrategy()
+    TextFormatStrategy.newBuilder().separator("|").logStrategy(print).build()
+        .log(LogLine.obtain(com.erlei.logger.Logger.INFO, "tag", "message"))
+    assertThat(print.messages.single()).endsWith("|INFO|tag|message" + System.lineSeparator())
+  }
+
+  @Test
+  fun linesKeepTheirTime() {
+    val print = CapturingPrintStrategy()
+    val line = LogLine.obtain(com.erlei.logger.Logger.INFO, "tag", "message")
+    line.time = 0
+    strategy(print).log(line)
+    assertThat(print.messages.single()).startsWith(
+        java.text.SimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS", java.util.Locale.getDefault()).format(0L))
+  }
+}
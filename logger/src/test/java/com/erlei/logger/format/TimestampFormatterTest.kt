@@ -0,0 +1,71 @@
+package com.erlei.logger.format
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.Random
+
+class TimestampFormatterTest {
+
+  private fun assertSameAsSimpleDateFormat(pattern: String, locale: Locale = Locale.US) {
+    val dateFormat = SimpleDateFormat(pattern, locale)
+    val formatter = TimestampFormatter(dateFormat)
+    val random = Random(pattern.hashCode().toLong())
+    val now = System.currentTimeMillis()
+    for (i in 0 until 2000) {
+      val time = when (i % 3) {
+        0 -> now + random.nextInt(5000)
+        1 -> random.nextLong() % 4_000_000_000_000L
+        else -> -random.nextInt(100_000).toLong()
+      }
+      assertThat(formatter.format(time)).isEqualTo(dateFormat.format(Date(time)))
+    }
+  }
+
+  @Test
+  fun defaultPattern() {
+    assertSameAsSimpleDateFormat("yyyy.MM.dd HH:mm:ss.SSS")
+  }
+
+  @Test
+  fun millisecondsAnywhere() {
+    assertSameAsSimpleDateFormat("S")
+    assertSameAsSimpleDateFormat("SS")
+    assertSameAsSimpleDateFormat("ss.SSSS")
+    assertSameAsSimpleDateFormat("'S'SSS")
+    assertSameAsSimpleDateFormat("SSS 'x''y' SSS")
+  }
+
+  @Test
+  fun everyMillisecondIsPadded() {
+    for (pattern in listOf("S", "SS", "SSS", "SSSS")) {
+      val dateFormat = SimpleDateFormat(pattern, Locale.US)
+      val formatter = TimestampFormatter(dateFormat)
+      for (millis in 0L until 1000L) {
+        assertThat(formatter.format(millis)).isEqualTo(dateFormat.format(Date(millis)))
+      }
+    }
+  }
+
+  @Test
+  fun withoutMilliseconds() {
+    assertSameAsSimpleDateFormat("HH:mm:ss")
+    assertSameAsSimpleDateFormat("yyyy")
+  }
+
+  @Test
+  fun nativeDigits() {
+    assertSameAsSimpleDateFormat("HH:mm:ss.SSS", Locale.forLanguageTag("th-TH-u-nu-thai"))
+  }
+
+  @Test
+  fun appendsToTheBuilder() {
+    val formatter = TimestampFormatter(SimpleDateFormat("ss.SSS", Locale.US))
+    val sb = StringBuilder("[")
+    formatter.format(7_005, sb)
+    sb.append(']')
+    assertThat(sb.toString()).isEqualTo("[07.005]")
+  }
+}
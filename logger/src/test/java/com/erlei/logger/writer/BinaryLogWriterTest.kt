@@ -0,0 +1,165 @@
+package com.erlei.logger.writer
+
+import com.erlei.logger.LogLine
+import com.erlei.logger.reader.BinaryLogDecoder
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class BinaryLogWriterTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  private fun ByteArray.decode(json: Boolean = false) =
+      decodeToString { BinaryLogDecoder.decode(inputStream(), it, json) }
+
+  private fun writeLines(from: Int, until: Int): ByteArray {
+    val file = folder.newFile()
+    val writer = BinaryLogWriter(FileLogWriter(file))
+    writer.write(
+        (from until until).map { i ->
+          LogLine.obtain(android.util.Log.INFO, "Tag${i % 4}", "line $i ü😀").apply {
+            time = 1000L * i
+            if (i == 1) extra["key"] = "va\"lue"
+          }
+        })
+    writer.close()
+    assertThat(writer.writtenBytes).isEqualTo(file.length())
+    return file.readBytes()
+  }
+
+  @Test
+  fun decodesToJson() {
+    val lines = writeLines(0, 100).decode(json = true).lines().filter { it.isNotEmpty() }
+    assertThat(lines).hasSize(100)
+    assertThat(lines[0]).isEqualTo(
+        "{\"level\":4,\"time\":0,\"tag\":\"Tag0\",\"msg\":\"line 0 ü😀\"}")
+    assertThat(lines[1]).isEqualTo(
+        "{\"level\":4,\"time\":1000,\"tag\":\"Tag1\",\"extra\":{\"key\":\"va\\\"lue\"},\"msg\":\"line 1 ü😀\"}")
+  }
+
+  @Test
+  fun decodesToText() {
+    val text = writeLines(0, 100).decode()
+    assertThat(text.lines().filter { it.isNotEmpty() }).hasSize(100)
+    assertThat(text).contains(",INFO,Tag2,line 98 ü😀\n")
+  }
+
+  @Test
+  fun skipsRecordCutByACrash() {
+    val crashed = writeLines(0, 100)
+    val next = writeLines(100, 110)
+    val text = (crashed.copyOf(crashed.size - 5) + next).decode()
+    assertThat(text).contains("line 98 ")
+    assertThat(text).doesNotContain("line 99 ")
+    assertThat(text).contains(",Tag2,line 102 ")
+    assertThat(text.lines().filter { it.isNotEmpty() }).hasSize(109)
+  }
+
+  @Test
+  fun storesRepeatedStringsOnce() {
+    val file = folder.newFile()
+    val writer = BinaryLogWriter(FileLogWriter(file))
+    val message = "a constant message which is logged again and again"
+    writer.write(
+        (0 until 1000).map { i ->
+          LogLine.obtain(android.util.Log.INFO, "Tag", message).apply {
+            setModuleName("Module")
+            time = i.toLong()
+          }
+        })
+    writer.close()
+    // the strings once, then a few bytes per line
+    assertThat(file.length()).isLessThan(message.length + 10L * 1000)
+    val lines = file.readBytes().decode(json = true).lines().filter { it.isNotEmpty() }
+    assertThat(lines).hasSize(1000)
+    assertThat(lines.toSet()).hasSize(1000)
+    assertThat(lines[999]).isEqualTo(
+        "{\"level\":4,\"time\":999,\"tag\":\"Module-Tag\",\"msg\":\"$message\"}")
+  }
+
+  @Test
+  fun storesFormatAndTypedArgs() {
+    val file = folder.newFile()
+    val writer = BinaryLogWriter(FileLogWriter(file))
+    val format = "%x %x %.2f %c %s %b %s %d %d %e"
+    val args = arrayOf<Any?>(-1, -1L, 1.5f, 'é', null, true, listOf(1, 2), (-3).toByte(), 300.toShort(), 1e300)
+    val expected = String.format(format, *args)
+    writer.write(
+        (0 until 3).map { i ->
+          LogLine.obtain(android.util.Log.INFO, "Tag").apply {
+            setFormat(format)
+            setArgs(args)
+            time = i.toLong()
+          }
+        })
+    writer.close()
+    val lines = file.readBytes().decode(json = true).lines().filter { it.isNotEmpty() }
+    assertThat(lines).hasSize(3)
+    for (line in lines) {
+      assertThat(line).contains("\"msg\":\"$expected\"")
+    }
+  }
+
+  @Test
+  fun storesNullExtraAsEmptyAndCreatesNoMap() {
+    val file = folder.newFile()
+    val writer = BinaryLogWriter(FileLogWriter(file))
+    val withNull = LogLine.obtain(android.util.Log.INFO, "Tag", "a").apply {
+      extra["key"] = null
+      time = 0
+    }
+    val plain = LogLine.obtain(android.util.Log.INFO, "Tag", "b").apply { time = 1 }
+    writer.write(listOf(withNull, plain))
+    writer.close()
+    assertThat(plain.peekExtra()).isNull()
+    val lines = file.readBytes().decode(json = true).lines().filter { it.isNotEmpty() }
+    assertThat(lines).containsExactly(
+        "{\"level\":4,\"time\":0,\"tag\":\"Tag\",\"extra\":{\"key\":\"\"},\"msg\":\"a\"}",
+        "{\"level\":4,\"time\":1,\"tag\":\"Tag\",\"msg\":\"b\"}").inOrder()
+  }
+
+  @Test
+  fun factoryFailsWithIOException() {
+    val file = folder.newFile()
+    // a writer which is already closed cannot take the header of the binary format
+    val factory = BinaryLogWriter.factory { FileLogWriter(it).apply { close() } }
+    try {
+      factory.create(file)
+      throw AssertionError("the header was written to a closed writer")
+    } catch (expected: java.io.IOException) {
+    }
+  }
+
+  @Test
+  fun storesLinesWithOtherArgsAsText() {
+    val file = folder.newFile()
+    val writer = BinaryLogWriter(FileLogWriter(file))
+    val format = "%d %x %tF %h"
+    val date = java.util.GregorianCalendar(2020, 0, 2)
+    val key = object : Any() {
+      override fun hashCode() = 0xabc
+      override fun toString() = "key"
+    }
+    val args = arrayOf<Any?>(java.math.BigInteger("123456789012345678901234567890"), java.math.BigInteger.TEN, date, key)
+    val expected = String.format(format, *args)
+    // the format is a constant from the second line on, a template would be used from then
+    writer.write(
+        (0 until 3).map { i ->
+          LogLine.obtain(android.util.Log.INFO, "Tag").apply {
+            setFormat(format)
+            setArgs(args)
+            time = i.toLong()
+          }
+        })
+    writer.close()
+    val lines = file.readBytes().decode(json = true).lines().filter { it.isNotEmpty() }
+    assertThat(lines).hasSize(3)
+    for (line in lines) {
+      assertThat(line).contains("\"msg\":\"$expected\"")
+    }
+    assertThat(expected).isEqualTo("123456789012345678901234567890 a 2020-01-02 abc")
+  }
+}
@@ -0,0 +1,106 @@
+package com.erlei.logger.writer
+
+import com.erlei.logger.LogLine
+import com.erlei.logger.adapter.DiskLogAdapter
+import com.erlei.logger.format.TextFormatStrategy
+import com.erlei.logger.printer.DiskPrintStrategy
+import com.erlei.logger.reader.BlockLogReader
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class BlockLogWriterTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  private fun File.read(from: Long = Long.MIN_VALUE, to: Long = Long.MAX_VALUE) =
+      BlockLogReader(this).use { reader -> decodeToString { reader.read(from, to, it) } }
+
+  private fun BlockLogWriter.writeLines(from: Int, until: Int): String {
+    val expected = StringBuilder()
+    for (i in from until until) {
+      val line = "line $i\n"
+      val log = LogLine.obtain(android.util.Log.DEBUG, "Block", line)
+      log.time = 1000L + i
+      write(log)
+      expected.append(line)
+    }
+    return expected.toString()
+  }
+
+  @Test
+  fun roundTrip() {
+    val file = folder.newFile("a.blk")
+    val writer = BlockLogWriter(file, 4096)
+    val expected = writer.writeLines(0, 2000)
+    writer.close()
+    assertThat(writer.writtenBytes).isLessThan(file.length())
+    assertThat(writer.uncompressedBytes).isEqualTo(expected.length.toLong())
+    assertThat(file.read()).isEqualTo(expected)
+  }
+
+  @Test
+  fun readsOnlyTheBlocksOfTheRange() {
+    val file = folder.newFile("a.blk")
+    BlockLogWriter(file, 4096).apply { writeLines(0, 2000) }.close()
+    BlockLogReader(file).use { reader ->
+      assertThat(reader.blocks.size).isGreaterThan(1)
+      val blocks = reader.getBlocks(2500, 2600)
+      assertThat(blocks).hasSize(1)
+      assertThat(blocks[0].firstTime).isAtMost(2500L)
+      assertThat(blocks[0].lineCount).isGreaterThan(0)
+    }
+    val decoded = file.read(2500, 2600)
+    assertThat(decoded).contains("line 1500\n")
+    assertThat(decoded).contains("line 1600\n")
+    assertThat(decoded).doesNotContain("line 10\n")
+  }
+
+  @Test
+  fun rebuildsTheIndexAfterACrashAndAppends() {
+    val file = folder.newFile("a.blk")
+    val writer = BlockLogWriter(file, 4096)
+    val expected = writer.writeLines(0, 2000)
+    writer.flush()
+    // the process dies, no index is written and the last block is cut
+    file.appendBytes(byteArrayOf(0x42, 0x4C, 0x4B, 0x31, 0, 0))
+    assertThat(file.read()).isEqualTo(expected)
+
+    val reopened = BlockLogWriter(file, 4096)
+    val appended = reopened.writeLines(2000, 2100)
+    reopened.close()
+    assertThat(file.read()).isEqualTo(expected + appended)
+  }
+
+  @Test
+  fun indexesTheTimeOfEachLineThroughTheFormatStrategy() {
+    val file = folder.newFile("a.blk")
+    val print = DiskPrintStrategy.newBuilder()
+        .fileProvider { _, _ -> file }
+        .writerFactory(BlockLogWriter.factory(4096))
+        .build()
+    val adapter = DiskLogAdapter(TextFormatStrategy.newBuilder().logStrategy(print).build())
+    for (i in 0 until 2000) {
+      val log = LogLine.obtain(android.util.Log.DEBUG, "Block", "line $i")
+      log.time = 1000L + i
+      adapter.log(log)
+    }
+    adapter.close()
+
+    BlockLogReader(file).use { reader ->
+      assertThat(reader.blocks.size).isGreaterThan(1)
+      assertThat(reader.blocks.first().firstTime).isEqualTo(1000L)
+      assertThat(reader.blocks.last().lastTime).isEqualTo(2999L)
+      val blocks = reader.getBlocks(2500, 2600)
+      assertThat(blocks.size).isAtMost(2)
+      assertThat(blocks.first().firstTime).isAtMost(2500L)
+      assertThat(blocks.last().lastTime).isAtLeast(2600L)
+    }
+    val decoded = file.read(2500, 2600)
+    assertThat(decoded).contains(",line 1550")
+    assertThat(decoded).doesNotContain(",line 10\n")
+  }
+}
@@ -0,0 +1,73 @@
+package com.erlei.logger.writer
+
+import com.erlei.logger.reader.CipherLogReader
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import javax.crypto.SecretKey
+
+class CipherLogWriterTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  private val key = CipherLogWriter.key(ByteArray(16) { it.toByte() })
+
+  private fun ByteArray.decrypt(key: SecretKey = this@CipherLogWriterTest.key) =
+      decodeToString { CipherLogReader.decrypt(inputStream(), it, key) }
+
+  private fun writeLines(file: File) =
+      CipherLogWriter(FileLogWriter(file), key, 4096, 0).writeJsonLines(file, 0, 10000)
+
+  @Test
+  fun roundTrip() {
+    val file = folder.newFile("a.enc")
+    val expected = writeLines(file)
+    assertThat(file.length()).isLessThan(expected.length / 5L)
+    assertThat(file.readText()).doesNotContain("line 1")
+    assertThat(file.readBytes().decrypt()).isEqualTo(expected)
+  }
+
+  @Test
+  fun skipsCorruptAndTruncatedChunks() {
+    val file = folder.newFile("a.enc")
+    val expected = writeLines(file)
+    val bytes = file.readBytes()
+    bytes[bytes.size / 2] = (bytes[bytes.size / 2].toInt() xor 1).toByte()
+    val decrypted = bytes.copyOf(bytes.size - 50).decrypt()
+    // one chunk fails authentication and the last one is cut, the others are intact
+    assertThat(decrypted.length).isAtLeast(expected.length - 2 * 4096)
+    assertThat(decrypted.length).isLessThan(expected.length)
+    assertThat(expected).startsWith(decrypted.substring(0, 4096))
+  }
+
+  @Test
+  fun wrongKeyDecryptsNothing() {
+    val file = folder.newFile("a.enc")
+    writeLines(file)
+    val other = CipherLogWriter.key(ByteArray(16) { 7 })
+    assertThat(file.readBytes().decrypt(other)).isEmpty()
+  }
+
+  @Test
+  fun factoryFailsWithIOExceptionAndClosesTheWrappedWriter() {
+    val file = folder.newFile("a.enc")
+    var inner: FileLogWriter? = null
+    val factory = CipherLogWriter.factory({ FileLogWriter(it).also { writer -> inner = writer } },
+        CipherLogWriter.key(ByteArray(5)))
+    try {
+      factory.create(file)
+      throw AssertionError("a key of 5 bytes is accepted")
+    } catch (expected: IOException) {
+    }
+    // a closed stream refuses to write
+    try {
+      inner!!.write("line\n")
+      throw AssertionError("the wrapped writer is still open")
+    } catch (expected: IOException) {
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.erlei.logger.writer
+
+import com.erlei.logger.reader.DeflateLogReader
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class DeflateLogWriterTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  private fun File.decode() = decodeToString { out -> inputStream().use { DeflateLogReader.decode(it, out) } }
+
+  private fun writeLines(file: File, from: Int, until: Int) =
+      DeflateLogWriter(FileLogWriter(file), 6, 4096, 0).writeJsonLines(file, from, until)
+
+  @Test
+  fun roundTrip() {
+    val file = folder.newFile("a.z")
+    val expected = writeLines(file, 0, 10000)
+    assertThat(file.length()).isLessThan(expected.length / 5L)
+    assertThat(file.decode()).isEqualTo(expected)
+  }
+
+  @Test
+  fun decodesUpToLastCompleteFrameAndResyncsOnNextSession() {
+    val crashed = folder.newFile("a.z")
+    val before = writeLines(crashed, 0, 10000)
+    // cut the last frame in the middle, as a crash would
+    val bytes = crashed.readBytes()
+    crashed.writeBytes(bytes.copyOf(bytes.size - 100))
+    val decoded = crashed.decode()
+    assertThat(decoded).isNotEmpty()
+    assertThat(before).startsWith(decoded)
+
+    val next = folder.newFile("b.z")
+    val after = writeLines(next, 10000, 10010)
+    crashed.appendBytes(next.readBytes())
+    assertThat(crashed.decode()).isEqualTo(decoded + after)
+  }
+}
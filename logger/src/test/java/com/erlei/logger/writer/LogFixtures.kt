@@ -0,0 +1,29 @@
+package com.erlei.logger.writer
+
+import com.google.common.truth.Truth.assertThat
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.OutputStream
+
+/**
+ * Runs a reader into memory and returns what it decoded as UTF-8
+ */
+internal inline fun decodeToString(decode: (OutputStream) -> Unit): String =
+    ByteArrayOutputStream().also { decode(it) }.toString("UTF-8")
+
+/**
+ * Writes the json lines from until into a writer of the given file, closes it
+ * and checks its counters, returns the written text
+ */
+internal fun LogWriter.writeJsonLines(file: File, from: Int, until: Int): String {
+  val expected = StringBuilder()
+  for (i in from until until) {
+    val line = "{\"level\":\"DEBUG\",\"message\":\"line $i\"}\n"
+    write(line)
+    expected.append(line)
+  }
+  assertThat(uncompressedBytes).isEqualTo(expected.length.toLong())
+  close()
+  assertThat(writtenBytes).isEqualTo(file.length())
+  return expected.toString()
+}
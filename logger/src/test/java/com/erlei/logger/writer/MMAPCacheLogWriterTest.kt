@@ -0,0 +1,154 @@
+package com.erlei.logger.writer
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Assume.assumeTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.RandomAccessFile
+import java.util.zip.GZIPInputStream
+
+class MMAPCacheLogWriterTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  private fun File.gunzip() = GZIPInputStream(inputStream()).use { String(it.readBytes()) }
+
+  @Test
+  fun spillsRegionsToLogFile() {
+    val file = File(folder.root, "log.txt")
+    val writer = MMAPCacheLogWriter(file, File(folder.root, "cache/a.mmap"), 4096)
+    val expected = StringBuilder()
+    for (i in 0 until 5000) {
+      val line = "line $i\n"
+      writer.write(line)
+      expected.append(line)
+    }
+    assertThat(writer.uncompressedBytes).isEqualTo(expected.length.toLong())
+    writer.close()
+    assertThat(writer.writtenBytes).isEqualTo(file.length())
+    assertThat(file.gunzip()).isEqualTo(expected.toString())
+    assertThat(file.length()).isLessThan(expected.length.toLong())
+  }
+
+  @Test
+  fun recoversRecordsLeftInCache() {
+    val file = File(folder.root, "log.txt")
+    val cache = File(folder.root, "a.mmap")
+    val writer = MMAPCacheLogWriter(file, cache, 4096)
+    writer.write("first\n")
+    writer.write("second\n")
+    // what a dead process leaves behind, the live writer keeps its lock on the original
+    val leftover = File(folder.root, "b.mmap")
+    cache.copyTo(leftover)
+
+    assertThat(MMAPCacheLogWriter.recover(cache)).isFalse()
+    assertThat(MMAPCacheLogWriter.recover(leftover)).isTrue()
+    assertThat(file.gunzip()).isEqualTo("first\nsecond\n")
+    // the cache is reset
+    assertThat(MMAPCacheLogWriter.recover(leftover)).isTrue()
+    assertThat(file.gunzip()).isEqualTo("first\nsecond\n")
+  }
+
+  @Test
+  fun recoveryStopsAtCorruptRecord() {
+    val file = File(folder.root, "log.txt")
+    val cache = File(folder.root, "a.mmap")
+    val writer = MMAPCacheLogWriter(file, cache, 4096)
+    writer.write("first\n")
+    writer.write("second\n")
+    val leftover = File(folder.root, "b.mmap")
+    cache.copyTo(leftover)
+    RandomAccessFile(leftover, "rw").use {
+      // the payload of the second record, after the header page and the first record
+      val position = MMAPCacheLogWriter.HEADER_SIZE + 2L * MMAPCacheLogWriter.RECORD_HEADER_SIZE + 6
+      it.seek(position)
+      it.write('S'.toInt())
+    }
+
+    MMAPCacheLogWriter.recover(leftover)
+    assertThat(file.gunzip()).isEqualTo("first\n")
+  }
+
+  @Test
+  fun roundTripsAcrossWritersOnTheSameCache() {
+    val file = File(folder.root, "log.txt")
+    val cache = File(folder.root, "a.mmap")
+    val expected = StringBuilder()
+    for (round in 0 until 3) {
+      val writer = MMAPCacheLogWriter(file, cache, 4096)
+      assertThat(writer.writtenBytes).isEqualTo(file.length())
+      assertThat(writer.uncompressedBytes).isEqualTo(0L)
+      for (i in 0 until 1000) {
+        val line = "round $round line $i\n"
+        writer.write(line)
+        expected.append(line)
+      }
+      writer.close()
+    }
+    assertThat(file.gunzip()).isEqualTo(expected.toString())
+    // a closed writer leaves nothing to recover
+    assertThat(MMAPCacheLogWriter.recover(cache)).isTrue()
+    assertThat(file.gunzip()).isEqualTo(expected.toString())
+  }
+
+  @Test
+  fun nextWriterRecoversStaleCache() {
+    val file = File(folder.root, "log.txt")
+    val cache = File(folder.root, "a.mmap")
+    val writer = MMAPCacheLogWriter(file, cache, 4096)
+    val expected = StringBuilder()
+    for (i in 0 until 1000) {
+      val line = "spilled $i\n"
+      writer.write(line)
+      expected.append(line)
+    }
+    writer.flush()
+    writer.write("cached\n")
+    expected.append("cached\n")
+    // the process dies here, the next one opens its writer on the stale cache
+    val stale = File(folder.root, "stale.mmap")
+    cache.copyTo(stale)
+
+    val next = MMAPCacheLogWriter(file, stale, 4096)
+    next.write("after crash\n")
+    expected.append("after crash\n")
+    next.close()
+    assertThat(file.gunzip()).isEqualTo(expected.toString())
+  }
+
+  @Test
+  fun recoveryRewritesSpillCutByCrash() {
+    val file = File(folder.root, "log.txt")
+    val cache = File(folder.root, "a.mmap")
+    val writer = MMAPCacheLogWriter(file, cache, 4096)
+    writer.write("first\n")
+    val stale = File(folder.root, "stale.mmap")
+    cache.copyTo(stale)
+    // the spill of region 0 started at offset 0 and wrote half a member before the crash
+    RandomAccessFile(stale, "rw").use {
+      it.seek(MMAPCacheLogWriter.OFFSET_SPILL_POSITION.toLong())
+      it.writeLong(0)
+    }
+    file.writeBytes(byteArrayOf(0x1f, 0x8b.toByte(), 8, 0))
+
+    assertThat(MMAPCacheLogWriter.recover(stale)).isTrue()
+    assertThat(file.gunzip()).isEqualTo("first\n")
+  }
+
+  @Test
+  fun failedSpillIsLeftToTheRecovery() {
+    val full = File("/dev/full")
+    assumeTrue(full.exists())
+    val cache = File(folder.root, "a.mmap")
+    val writer = MMAPCacheLogWriter(full, cache, 4096)
+    writer.write("first\n")
+    // every spill fails with ENOSPC, the retry too
+    writer.close()
+    RandomAccessFile(cache, "r").use {
+      assertThat(it.readInt()).isEqualTo(MMAPCacheLogWriter.MAGIC)
+    }
+  }
+}
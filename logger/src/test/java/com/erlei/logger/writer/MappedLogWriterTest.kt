@@ -0,0 +1,72 @@
+package com.erlei.logger.writer
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+
+class MappedLogWriterTest {
+
+  @get:Rule
+  val folder = TemporaryFolder()
+
+  @Test
+  fun writesAcrossWindowsAndTruncatesOnClose() {
+    val file = folder.newFile("a.log")
+    val writer = MappedLogWriter(file, 1)
+    val expected = StringBuilder()
+    for (i in 0 until 3000) {
+      val line = "line $i\n"
+      writer.write(line)
+      expected.append(line)
+    }
+    assertThat(writer.writtenBytes).isEqualTo(expected.length.toLong())
+    assertThat(file.length()).isAtLeast(writer.writtenBytes)
+    writer.close()
+    assertThat(file.length()).isEqualTo(expected.length.toLong())
+    assertThat(file.readText()).isEqualTo(expected.toString())
+  }
+
+  @Test
+  fun trimsPaddingLeftByUnclosedWriter() {
+    val file = folder.newFile("b.log")
+    file.writeText("first\n")
+    RandomAccessFile(file, "rw").use { it.setLength(file.length() + 3000) }
+
+    val writer = MappedLogWriter(file, 1)
+    assertThat(writer.writtenBytes).isEqualTo(6L)
+    writer.write("second\n")
+    writer.close()
+    assertThat(file.readText()).isEqualTo("first\nsecond\n")
+  }
+
+  @Test
+  fun cutsToCommittedLengthEvenIfContentEndsWithNul() {
+    val file = folder.newFile("d.log")
+    val writer = MappedLogWriter(file, 1)
+    writer.write("a\u0000\u0000")
+    writer.flush()
+    // what a dead process leaves behind, the live writer keeps its lock on the original
+    val copy = File(folder.root, "e.log")
+    file.copyTo(copy)
+    CommittedLength.getFile(file).copyTo(CommittedLength.getFile(copy))
+    assertThat(copy.length()).isGreaterThan(3)
+    assertThat(CommittedLength.read(copy)).isEqualTo(3L)
+
+    val reopened = MappedLogWriter(copy, 1)
+    assertThat(reopened.writtenBytes).isEqualTo(3L)
+    reopened.close()
+    assertThat(copy.readText()).isEqualTo("a\u0000\u0000")
+    assertThat(CommittedLength.getFile(copy).exists()).isFalse()
+  }
+
+  @Test(expected = IOException::class)
+  fun fileCanOnlyBeMappedOnce() {
+    val file = folder.newFile("c.log")
+    MappedLogWriter(file, 1)
+    MappedLogWriter(file, 1)
+  }
+}
@@ -0,0 +1,45 @@
+package com.erlei.logger.writer
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import java.nio.ByteBuffer
+
+class Utf8Test {
+
+  private val samples = listOf(
+      "",
+      "plain ascii",
+      "é 中文日志",
+      "emoji 😀 pair",
+      "unpaired \uD800 high",
+      "\uDC00 unpaired low",
+      "trailing high \uD83D",
+      "\u007f\u0080߿ࠀ￿"
+  )
+
+  @Test
+  fun encodedLengthMatchesGetBytes() {
+    for (sample in samples) {
+      assertThat(Utf8.encodedLength(sample)).isEqualTo(sample.toByteArray(Charsets.UTF_8).size)
+    }
+  }
+
+  @Test
+  fun encodeMatchesGetBytes() {
+    val buffer = ByteBuffer.allocate(256)
+    for (sample in samples) {
+      buffer.clear()
+      val length = Utf8.encode(sample, buffer)
+      assertThat(buffer.array().copyOf(length)).isEqualTo(sample.toByteArray(Charsets.UTF_8))
+    }
+  }
+
+  @Test
+  fun encodeIntoArrayMatchesGetBytes() {
+    val bytes = ByteArray(256)
+    for (sample in samples) {
+      val length = Utf8.encode(StringBuilder(sample), bytes, 3)
+      assertThat(bytes.copyOfRange(3, 3 + length)).isEqualTo(sample.toByteArray(Charsets.UTF_8))
+    }
+  }
+}